@@ -0,0 +1,101 @@
+package ycache.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ycache.Cache;
+import ycache.SegmentedCache;
+import ycache.SimpleCache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of cache operations.
+ * Number of threads is set by JMH option {@code -t}, allocation rate per
+ * operation is reported by {@code -prof gc}.
+ *
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+    // Length of pregenerated key sequence, power of two
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+
+    @Param({"SIMPLE", "SEGMENTED"})
+    public String cacheType;
+
+    @Param({"LRU", "LFU", "FIFO", "RANDOM"})
+    public Strategy strategy;
+
+    @Param({"ZIPF", "UNIFORM", "SCAN"})
+    public KeyDistribution distribution;
+
+    @Param({"10000"})
+    public int maxSize;
+
+    private Cache<Integer,Integer> cache;
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("SIMPLE".equals(cacheType)) {
+            cache = new SimpleCache<Integer, Integer>(maxSize, strategy.<Integer>create(maxSize));
+        } else {
+            cache = new SegmentedCache<Integer, Integer>(maxSize,
+                    Runtime.getRuntime().availableProcessors() * 4, strategy.<Integer>factory());
+        }
+        // Key space is larger than cache, so there are misses and evictions
+        keys = distribution.generate(SEQUENCE_LENGTH, maxSize * 2, 42);
+        for (int i = 0; i < maxSize; i++) {
+            cache.put(keys[i], keys[i]);
+        }
+    }
+
+    /**
+     * Position of each thread in key sequence.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index = ThreadLocalRandom.current().nextInt(SEQUENCE_LENGTH);
+
+        int next() {
+            return index++ & (SEQUENCE_LENGTH - 1);
+        }
+    }
+
+    @Benchmark
+    public Integer get(Cursor cursor) {
+        return cache.get(keys[cursor.next()]);
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) {
+        Integer key = keys[cursor.next()];
+        cache.put(key, key);
+    }
+
+    @Benchmark
+    public boolean putIfAbsent(Cursor cursor) {
+        Integer key = keys[cursor.next()];
+        return cache.putIfAbsent(key, key);
+    }
+
+    /**
+     * Typical read-through usage: get and put on miss.
+     */
+    @Benchmark
+    public Integer getOrPut(Cursor cursor) {
+        Integer key = keys[cursor.next()];
+        Integer value = cache.get(key);
+        if (value == null) {
+            cache.put(key, key);
+            value = key;
+        }
+        return value;
+    }
+}
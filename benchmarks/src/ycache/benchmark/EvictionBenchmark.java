@@ -0,0 +1,71 @@
+package ycache.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ycache.eviction.EvictionStrategy;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of eviction strategy operations, single-threaded.
+ * Each eviction asks strategy for victims, removes them and puts them back,
+ * so number of tracked keys stays the same.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvictionBenchmark {
+
+    // Length of pregenerated key sequence, power of two
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+
+    @Param({"LRU", "LFU", "FIFO", "RANDOM"})
+    public Strategy strategy;
+
+    @Param({"ZIPF"})
+    public KeyDistribution distribution;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    // Number of victims per eviction, same as SimpleCache evicts at once
+    @Param({"10"})
+    public int victims;
+
+    private EvictionStrategy<Integer> eviction;
+    private Integer[] keys;
+    private int index = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        eviction = strategy.create(size);
+        for (int i = 0; i < size; i++) {
+            eviction.notifyPut(i);
+        }
+        // Accesses only touch tracked keys
+        keys = distribution.generate(SEQUENCE_LENGTH, size, 42);
+    }
+
+    @Benchmark
+    public void notifyGet() {
+        eviction.notifyGet(keys[index++ & (SEQUENCE_LENGTH - 1)]);
+    }
+
+    @Benchmark
+    public void evict(Blackhole bh) {
+        Collection<Integer> res = eviction.nextVictims(victims);
+        for (Integer key : res) {
+            eviction.notifyRemove(key);
+        }
+        for (Integer key : res) {
+            eviction.notifyPut(key);
+        }
+        bh.consume(res);
+    }
+}
@@ -0,0 +1,84 @@
+package ycache.benchmark;
+
+import java.util.Random;
+
+/**
+ * Key access distributions used by benchmarks.
+ * Each distribution generates a fixed sequence of keys in advance, so
+ * generation cost is not measured.
+ *
+ * @version 1.0
+ */
+public enum KeyDistribution {
+
+    /**
+     * Every key is equally likely.
+     */
+    UNIFORM {
+        @Override
+        void fill(Integer[] keys, int keySpace, Random rnd) {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = rnd.nextInt(keySpace);
+            }
+        }
+    },
+
+    /**
+     * Key of rank {@code k} is accessed with probability proportional to {@code 1/k^0.99}.
+     */
+    ZIPF {
+        @Override
+        void fill(Integer[] keys, int keySpace, Random rnd) {
+            double[] cdf = new double[keySpace];
+            double sum = 0;
+            for (int i = 0; i < keySpace; i++) {
+                sum += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                double u = rnd.nextDouble() * sum;
+                int lo = 0, hi = keySpace - 1;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (cdf[mid] < u) lo = mid + 1;
+                    else hi = mid;
+                }
+                keys[i] = lo;
+            }
+        }
+    },
+
+    /**
+     * Zipfian hot set interleaved with long sequential scans of keys which are never reused.
+     */
+    SCAN {
+        @Override
+        void fill(Integer[] keys, int keySpace, Random rnd) {
+            ZIPF.fill(keys, keySpace, rnd);
+            int next = keySpace;
+            for (int i = 0; i < keys.length; i += 4 * keySpace) {
+                for (int j = i; j < Math.min(i + keySpace, keys.length); j++) {
+                    keys[j] = next++;
+                }
+            }
+        }
+    };
+
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    /**
+     * Generates sequence of keys.
+     *
+     * @param length Length of sequence, should be power of two
+     * @param keySpace Number of distinct keys
+     * @param seed Random seed
+     * @return Sequence of keys
+     */
+    public Integer[] generate(int length, int keySpace, long seed) {
+        Integer[] keys = new Integer[length];
+        fill(keys, keySpace, new Random(seed));
+        return keys;
+    }
+
+    abstract void fill(Integer[] keys, int keySpace, Random rnd);
+}
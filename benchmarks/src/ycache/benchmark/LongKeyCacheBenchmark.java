@@ -0,0 +1,94 @@
+package ycache.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ycache.LongKeyCache;
+import ycache.SimpleCache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primitive long key cache against {@link SimpleCache} with boxed keys.
+ * Run with {@code -prof gc} to compare allocation per operation.
+ * {@code Contended} variants run in 4 threads, to compare segment locks of
+ * {@link LongKeyCache} with the concurrent map of {@link SimpleCache}.
+ *
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongKeyCacheBenchmark {
+
+    // Length of pregenerated key sequence, power of two
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+
+    @Param({"ZIPF", "UNIFORM"})
+    public KeyDistribution distribution;
+
+    @Param({"10000"})
+    public int maxSize;
+
+    private SimpleCache<Long,Object> boxed;
+    private LongKeyCache<Object> primitive;
+    private long[] keys;
+    private final Object value = new Object();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boxed = new SimpleCache<Long, Object>(maxSize);
+        primitive = new LongKeyCache<Object>(maxSize);
+        Integer[] sequence = distribution.generate(SEQUENCE_LENGTH, maxSize * 2, 42);
+        keys = new long[sequence.length];
+        for (int i = 0; i < sequence.length; i++) {
+            keys[i] = sequence[i];
+        }
+        for (int i = 0; i < maxSize; i++) {
+            boxed.put(keys[i], value);
+            primitive.put(keys[i], value);
+        }
+    }
+
+    /**
+     * Position of each thread in key sequence.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index = ThreadLocalRandom.current().nextInt(SEQUENCE_LENGTH);
+
+        int next() {
+            return index++ & (SEQUENCE_LENGTH - 1);
+        }
+    }
+
+    @Benchmark
+    public Object getOrPutBoxed(Cursor cursor) {
+        long key = keys[cursor.next()];
+        Object res = boxed.get(key);
+        if (res == null) boxed.put(key, value);
+        return res;
+    }
+
+    @Benchmark
+    public Object getOrPutPrimitive(Cursor cursor) {
+        long key = keys[cursor.next()];
+        Object res = primitive.get(key);
+        if (res == null) primitive.put(key, value);
+        return res;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getOrPutBoxedContended(Cursor cursor) {
+        return getOrPutBoxed(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getOrPutPrimitiveContended(Cursor cursor) {
+        return getOrPutPrimitive(cursor);
+    }
+}
@@ -0,0 +1,67 @@
+package ycache.benchmark;
+
+import ycache.eviction.*;
+
+/**
+ * Eviction strategies compared by benchmarks.
+ *
+ * @version 1.0
+ */
+public enum Strategy {
+    LRU {
+        @Override
+        public <K> EvictionStrategy<K> create(int cacheSize) {
+            return new LRUEviction<K>(cacheSize);
+        }
+    },
+    LFU {
+        @Override
+        public <K> EvictionStrategy<K> create(int cacheSize) {
+            return new LFUEviction<K>(cacheSize);
+        }
+    },
+    FIFO {
+        @Override
+        public <K> EvictionStrategy<K> create(int cacheSize) {
+            return new FIFOEviction<K>(cacheSize);
+        }
+    },
+    RANDOM {
+        @Override
+        public <K> EvictionStrategy<K> create(int cacheSize) {
+            return new RandomEviction<K>(cacheSize);
+        }
+    },
+    WTINYLFU {
+        @Override
+        public <K> EvictionStrategy<K> create(int cacheSize) {
+            return new WTinyLFUEviction<K>(cacheSize);
+        }
+    },
+    ARC {
+        @Override
+        public <K> EvictionStrategy<K> create(int cacheSize) {
+            return new ARCEviction<K>(cacheSize);
+        }
+    };
+
+    /**
+     * Creates new instance of strategy.
+     *
+     * @param cacheSize Max size of cache
+     * @return Eviction strategy
+     */
+    public abstract <K> EvictionStrategy<K> create(int cacheSize);
+
+    /**
+     * @return Factory creating this strategy
+     */
+    public <K> EvictionStrategyFactory<K> factory() {
+        return new EvictionStrategyFactory<K>() {
+            @Override
+            public EvictionStrategy<K> create(int cacheSize) {
+                return Strategy.this.create(cacheSize);
+            }
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package ycache.simulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Trace read from file, streamed so it may be larger than heap.
+ * <p>
+ * Text trace has one access per line, key is the first token of the line:
+ * numeric keys are used as they are, other keys are hashed. Empty lines and
+ * lines starting with {@code #} are skipped, other tokens (e.g. timestamps) are ignored.
+ * Binary trace is a sequence of 8-byte big-endian keys, files with {@code .bin}
+ * extension are read as binary.
+ *
+ * @version 1.0
+ */
+public class FileTrace implements Trace {
+
+    // Size of read buffer
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final BufferedReader text;
+    private final DataInputStream binary;
+
+    /**
+     * Opens trace, format is chosen by file extension.
+     *
+     * @param file Trace file
+     * @throws IOException if file can't be opened
+     */
+    public FileTrace(File file) throws IOException {
+        this(file, file.getName().endsWith(".bin"));
+    }
+
+    /**
+     * Opens trace of given format.
+     *
+     * @param file Trace file
+     * @param binary true for binary trace, false for text one
+     * @throws IOException if file can't be opened
+     */
+    public FileTrace(File file, boolean binary) throws IOException {
+        if (binary) {
+            this.binary = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            this.text = null;
+        } else {
+            this.text = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8),
+                    BUFFER_SIZE);
+            this.binary = null;
+        }
+    }
+
+    @Override
+    public int read(long[] keys) throws IOException {
+        return binary != null ? readBinary(keys) : readText(keys);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (binary != null) binary.close();
+        else text.close();
+    }
+
+    /**
+     * Writes trace to binary file, e.g. to save synthetic trace.
+     *
+     * @param trace Trace
+     * @param file Binary trace file
+     * @return Number of written events
+     * @throws IOException if trace can't be read or written
+     */
+    public static long write(Trace trace, File file) throws IOException {
+        long count = 0;
+        long[] keys = new long[BUFFER_SIZE];
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        try {
+            int n;
+            while ((n = trace.read(keys)) >= 0) {
+                for (int i = 0; i < n; i++) {
+                    out.writeLong(keys[i]);
+                }
+                count += n;
+            }
+        } finally {
+            out.close();
+        }
+        return count;
+    }
+
+    private int readBinary(long[] keys) throws IOException {
+        int n = 0;
+        try {
+            while (n < keys.length) {
+                keys[n] = binary.readLong();
+                n++;
+            }
+        } catch (EOFException e) {
+            // The last block may be shorter
+        }
+        return n == 0 && keys.length > 0 ? -1 : n;
+    }
+
+    private int readText(long[] keys) throws IOException {
+        int n = 0;
+        String line;
+        while (n < keys.length && (line = text.readLine()) != null) {
+            int start = 0;
+            while (start < line.length() && Character.isWhitespace(line.charAt(start))) start++;
+            if (start == line.length() || line.charAt(start) == '#') continue;
+            int end = start;
+            while (end < line.length() && !Character.isWhitespace(line.charAt(end))) end++;
+            keys[n++] = key(line.substring(start, end));
+        }
+        return n == 0 && keys.length > 0 ? -1 : n;
+    }
+
+    private static long key(String token) {
+        try {
+            return Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            // 64-bit FNV-1a, so distinct keys rarely collide
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < token.length(); i++) {
+                h ^= token.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+    }
+}
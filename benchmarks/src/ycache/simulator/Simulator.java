@@ -0,0 +1,281 @@
+package ycache.simulator;
+
+import ycache.benchmark.Strategy;
+import ycache.eviction.EvictionStrategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays a trace of key accesses against eviction strategies at several cache sizes
+ * and measures hit ratio of every strategy and size.
+ * <p>
+ * Trace is streamed in chunks, so it may have billions of events: every chunk is replayed
+ * by all simulations in parallel while the next one is read. Every simulation drives its
+ * {@link EvictionStrategy} the same way {@link ycache.SimpleCache} does: a hit is reported
+ * by {@link EvictionStrategy#notifyGet(Object)}, a miss by {@link EvictionStrategy#notifyMiss(Object)}
+ * and then the key is put, if strategy admits it, after a victim is evicted from the full cache.
+ * Values are not stored, so measured throughput is the one of strategy itself.
+ *
+ * @version 1.0
+ */
+public class Simulator {
+
+    // Number of events replayed at once by every simulation
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final List<Strategy> strategies;
+    private final int[] sizes;
+    private final int threads;
+
+    /**
+     * Constructor.
+     *
+     * @param strategies Eviction strategies to compare
+     * @param sizes Cache sizes, every strategy is simulated at every size
+     * @param threads Number of simulations run in parallel
+     */
+    public Simulator(List<Strategy> strategies, int[] sizes, int threads) {
+        if (strategies.isEmpty() || sizes.length == 0) throw new IllegalArgumentException("Nothing to simulate");
+        for (int size : sizes) {
+            if (size <= 0) throw new IllegalArgumentException("Cache size should be positive: " + size);
+        }
+        this.strategies = new ArrayList<Strategy>(strategies);
+        this.sizes = sizes.clone();
+        this.threads = threads;
+    }
+
+    /**
+     * Replays trace, the trace is read to the end but not closed.
+     *
+     * @param trace Trace of key accesses
+     * @return Results of every strategy at every size, in order of strategies and then sizes
+     * @throws IOException if trace can't be read
+     * @throws InterruptedException if interrupted
+     */
+    public List<Result> run(Trace trace) throws IOException, InterruptedException {
+        final List<Simulation> simulations = new ArrayList<Simulation>();
+        for (Strategy strategy : strategies) {
+            for (int size : sizes) {
+                simulations.add(new Simulation(strategy, size));
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, simulations.size()));
+        try {
+            long[] current = new long[CHUNK_SIZE];
+            long[] next = new long[CHUNK_SIZE];
+            int n = trace.read(current);
+            while (n >= 0) {
+                List<Future<?>> futures = new ArrayList<Future<?>>(simulations.size());
+                for (Simulation simulation : simulations) {
+                    futures.add(executor.submit(simulation.replay(current, n)));
+                }
+                // Next chunk is read while the current one is replayed
+                int m = trace.read(next);
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Simulation failed", e.getCause());
+                    }
+                }
+                long[] t = current;
+                current = next;
+                next = t;
+                n = m;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        List<Result> res = new ArrayList<Result>(simulations.size());
+        for (Simulation simulation : simulations) {
+            res.add(simulation.result);
+        }
+        return res;
+    }
+
+    /**
+     * Formats results as tables of hit ratio and throughput, strategies in rows and sizes in columns.
+     *
+     * @param results Results of {@link #run(Trace)}
+     * @return Text tables
+     */
+    public String format(List<Result> results) {
+        StringBuilder sb = new StringBuilder();
+        table(sb, "Hit ratio, %", results, true);
+        sb.append('\n');
+        table(sb, "Throughput, M events/s", results, false);
+        return sb.toString();
+    }
+
+    private void table(StringBuilder sb, String title, List<Result> results, boolean hitRatio) {
+        sb.append(title).append('\n');
+        sb.append(String.format("%-10s", "Strategy"));
+        for (int size : sizes) {
+            sb.append(String.format("%12d", size));
+        }
+        sb.append('\n');
+        int i = 0;
+        for (Strategy strategy : strategies) {
+            sb.append(String.format("%-10s", strategy));
+            for (int j = 0; j < sizes.length; j++) {
+                Result result = results.get(i++);
+                sb.append(String.format("%12.2f", hitRatio ? result.hitRatio() * 100 : result.throughput() / 1e6));
+            }
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * Cache of one strategy and size, chunks are replayed one at a time.
+     */
+    private static final class Simulation {
+        private final EvictionStrategy<Long> strategy;
+        private final int size;
+        // Keys of cached elements
+        private final Set<Long> resident;
+        private final Result result;
+
+        Simulation(Strategy strategy, int size) {
+            this.strategy = strategy.create(size);
+            this.size = size;
+            this.resident = new HashSet<Long>(size * 2);
+            this.result = new Result(strategy, size);
+        }
+
+        Callable<Void> replay(final long[] keys, final int count) {
+            return new Callable<Void>() {
+                @Override
+                public Void call() {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < count; i++) {
+                        access(keys[i]);
+                    }
+                    result.nanos += System.nanoTime() - start;
+                    return null;
+                }
+            };
+        }
+
+        private void access(long k) {
+            Long key = k;
+            if (resident.contains(key)) {
+                result.hits++;
+                strategy.notifyGet(key);
+                return;
+            }
+            result.misses++;
+            strategy.notifyMiss(key);
+            if (resident.size() >= size) {
+                if (!strategy.admit(key)) return;
+                Collection<Long> victims = strategy.nextVictims(1);
+                for (Long victim : victims) {
+                    resident.remove(victim);
+                    strategy.notifyRemove(victim);
+                }
+            }
+            resident.add(key);
+            strategy.notifyPut(key);
+        }
+    }
+
+    /**
+     * Outcome of simulation of one strategy at one cache size.
+     */
+    public static final class Result {
+        private final Strategy strategy;
+        private final int size;
+        // Updated only by one replaying thread at a time, read after all chunks are replayed
+        private long hits;
+        private long misses;
+        private long nanos;
+
+        Result(Strategy strategy, int size) {
+            this.strategy = strategy;
+            this.size = size;
+        }
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return Share of accesses which were hits
+         */
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        /**
+         * @return Events per second replayed by strategy
+         */
+        public double throughput() {
+            return nanos == 0 ? 0 : (hits + misses) * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Result(strategy=%s,size=%d,hits=%d,misses=%d,hitRatio=%.4f,throughput=%.0f/s)",
+                    strategy, size, hits, misses, hitRatio(), throughput());
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: Simulator (traceFile | zipf|loop|scan:length:keys) size1,size2,... [strategy1,strategy2,...] [threads]");
+            System.exit(1);
+        }
+        String[] sizeArgs = args[1].split(",");
+        int[] sizes = new int[sizeArgs.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = Integer.parseInt(sizeArgs[i].trim());
+        }
+        List<Strategy> strategies = new ArrayList<Strategy>();
+        if (args.length > 2) {
+            for (String name : args[2].split(",")) {
+                strategies.add(Strategy.valueOf(name.trim().toUpperCase()));
+            }
+        } else {
+            strategies.addAll(Arrays.asList(Strategy.values()));
+        }
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Simulator simulator = new Simulator(strategies, sizes, threads);
+        File file = new File(args[0]);
+        Trace trace = file.exists() ? new FileTrace(file) : SyntheticTrace.parse(args[0]);
+        long start = System.nanoTime();
+        List<Result> results;
+        try {
+            results = simulator.run(trace);
+        } finally {
+            trace.close();
+        }
+        System.out.print(simulator.format(results));
+        Result first = results.get(0);
+        System.out.printf("%nReplayed %d events in %.1f s%n", first.getHits() + first.getMisses(),
+                (System.nanoTime() - start) / 1e9);
+    }
+}
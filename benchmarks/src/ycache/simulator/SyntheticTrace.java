@@ -0,0 +1,122 @@
+package ycache.simulator;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generated trace with typical access patterns, keys are generated as they are read.
+ *
+ * @version 1.0
+ */
+public class SyntheticTrace implements Trace {
+
+    public enum Kind {
+
+        /**
+         * Key of rank {@code k} is accessed with probability proportional to {@code 1/k^0.99}.
+         */
+        ZIPF,
+
+        /**
+         * Keys are accessed in a loop, the worst case for LRU when loop is larger than cache.
+         */
+        LOOP,
+
+        /**
+         * Zipfian hot set interleaved with long sequential scans of keys which are never reused:
+         * every {@code 4 * keySpace} accesses start with a scan of {@code keySpace} new keys.
+         */
+        SCAN
+    }
+
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    private final Kind kind;
+    private final long length;
+    private final int keySpace;
+    private final Random rnd;
+    // Cumulative distribution of key ranks, for Zipfian accesses
+    private final double[] cdf;
+
+    private long position = 0;
+    // Next key of scans, never reused
+    private long nextScanKey;
+
+    /**
+     * Constructor.
+     *
+     * @param kind Access pattern
+     * @param length Number of accesses
+     * @param keySpace Number of distinct keys, without keys of scans
+     * @param seed Random seed
+     */
+    public SyntheticTrace(Kind kind, long length, int keySpace, long seed) {
+        if (keySpace <= 0) throw new IllegalArgumentException("Key space should be positive: " + keySpace);
+        this.kind = kind;
+        this.length = length;
+        this.keySpace = keySpace;
+        this.rnd = new Random(seed);
+        this.nextScanKey = keySpace;
+        if (kind == Kind.LOOP) {
+            this.cdf = null;
+        } else {
+            this.cdf = new double[keySpace];
+            double sum = 0;
+            for (int i = 0; i < keySpace; i++) {
+                sum += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+                cdf[i] = sum;
+            }
+        }
+    }
+
+    /**
+     * Creates trace by description {@code kind:length:keySpace}, e.g. {@code zipf:10000000:100000}.
+     *
+     * @param spec Description of trace
+     * @return Trace with seed 42
+     */
+    public static SyntheticTrace parse(String spec) {
+        String[] parts = spec.split(":");
+        if (parts.length != 3) throw new IllegalArgumentException("Trace should be described as kind:length:keySpace: " + spec);
+        return new SyntheticTrace(Kind.valueOf(parts[0].toUpperCase(Locale.ROOT)), Long.parseLong(parts[1]),
+                Integer.parseInt(parts[2]), 42);
+    }
+
+    @Override
+    public int read(long[] keys) {
+        if (position >= length) return -1;
+        int n = (int) Math.min(keys.length, length - position);
+        for (int i = 0; i < n; i++) {
+            keys[i] = next();
+            position++;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private long next() {
+        switch (kind) {
+            case LOOP:
+                return position % keySpace;
+            case SCAN:
+                if (position % (4L * keySpace) < keySpace) return nextScanKey++;
+                return zipf();
+            default:
+                return zipf();
+        }
+    }
+
+    private long zipf() {
+        double u = rnd.nextDouble() * cdf[keySpace - 1];
+        int lo = 0, hi = keySpace - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < u) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,22 @@
+package ycache.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Stream of key accesses replayed by {@link Simulator}.
+ * Keys are longs, so a trace of millions of events is read in blocks without boxing.
+ *
+ * @version 1.0
+ */
+public interface Trace extends Closeable {
+
+    /**
+     * Reads next events.
+     *
+     * @param keys Buffer of keys
+     * @return Number of keys read, -1 at the end of trace
+     * @throws IOException if trace can't be read
+     */
+    int read(long[] keys) throws IOException;
+}
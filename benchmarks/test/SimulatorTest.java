@@ -0,0 +1,103 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ycache.benchmark.Strategy;
+import ycache.simulator.FileTrace;
+import ycache.simulator.Simulator;
+import ycache.simulator.SyntheticTrace;
+import ycache.simulator.Trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for Simulator class and traces.
+ */
+public class SimulatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLoop() throws IOException, InterruptedException {
+        System.out.print("\nTesting simulator on loop trace\n");
+        Simulator simulator = new Simulator(Arrays.asList(Strategy.LRU, Strategy.FIFO), new int[]{900, 1000}, 2);
+        List<Simulator.Result> results = simulator.run(new SyntheticTrace(SyntheticTrace.Kind.LOOP, 100000, 1000, 1));
+        assertEquals(4, results.size());
+        // Loop larger than cache always misses, the one that fits only misses the first round
+        assertEquals(900, results.get(0).getSize());
+        assertEquals(0, results.get(0).getHits());
+        assertEquals(1000, results.get(1).getMisses());
+        assertEquals(99000, results.get(1).getHits());
+        assertEquals(Strategy.FIFO, results.get(2).getStrategy());
+        assertEquals(0, results.get(2).getHits());
+        System.out.print(simulator.format(results));
+    }
+
+    @Test
+    public void testZipf() throws IOException, InterruptedException {
+        System.out.print("\nTesting simulator on Zipfian and scan traces\n");
+        Simulator simulator = new Simulator(Arrays.asList(Strategy.values()), new int[]{100, 1000}, 4);
+        List<Simulator.Result> results = simulator.run(new SyntheticTrace(SyntheticTrace.Kind.ZIPF, 200000, 10000, 1));
+        for (int i = 0; i < results.size(); i += 2) {
+            Simulator.Result small = results.get(i);
+            Simulator.Result large = results.get(i + 1);
+            assertEquals(200000, small.getHits() + small.getMisses());
+            assertTrue(small + " " + large, small.hitRatio() > 0.1 && small.hitRatio() < large.hitRatio());
+        }
+        // Scans flush LRU, while W-TinyLFU keeps the hot set
+        simulator = new Simulator(Arrays.asList(Strategy.LRU, Strategy.WTINYLFU), new int[]{1000}, 2);
+        results = simulator.run(new SyntheticTrace(SyntheticTrace.Kind.SCAN, 400000, 10000, 1));
+        assertTrue(results.toString(), results.get(0).hitRatio() < results.get(1).hitRatio());
+    }
+
+    @Test
+    public void testFileTrace() throws IOException, InterruptedException {
+        System.out.print("\nTesting file traces\n");
+        File text = folder.newFile("trace.txt");
+        PrintWriter out = new PrintWriter(text, "UTF-8");
+        try {
+            out.println("# key timestamp");
+            for (int i = 0; i < 10000; i++) {
+                out.println((i % 7 == 0 ? "key" + (i % 300) : String.valueOf(i % 500)) + " " + i);
+                if (i % 1000 == 0) out.println();
+            }
+        } finally {
+            out.close();
+        }
+        File binary = folder.newFile("trace.bin");
+        Trace trace = new FileTrace(text);
+        try {
+            assertEquals(10000, FileTrace.write(trace, binary));
+        } finally {
+            trace.close();
+        }
+        assertEquals(10000 * 8, binary.length());
+
+        Simulator simulator = new Simulator(Arrays.asList(Strategy.LRU, Strategy.LFU), new int[]{100, 400}, 2);
+        List<Simulator.Result> fromText;
+        List<Simulator.Result> fromBinary;
+        trace = new FileTrace(text);
+        try {
+            fromText = simulator.run(trace);
+        } finally {
+            trace.close();
+        }
+        trace = new FileTrace(binary);
+        try {
+            fromBinary = simulator.run(trace);
+        } finally {
+            trace.close();
+        }
+        for (int i = 0; i < fromText.size(); i++) {
+            assertEquals(10000, fromText.get(i).getHits() + fromText.get(i).getMisses());
+            assertEquals(fromText.get(i).getHits(), fromBinary.get(i).getHits());
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package ycache.cluster;
+
+import org.apache.log4j.Logger;
+import ycache.Cache;
+import ycache.serializer.Serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache partitioned over several nodes, so it can hold more than one heap.
+ * Every node is a memcached text protocol server with its own local cache, e.g.
+ * {@link ycache.server.MemcachedServer} with {@link ycache.SimpleCache}.
+ * Keys are spread over nodes by {@link HashRing}, so adding or removing a node
+ * moves only about 1/N of keys; moved keys are misses until they are put again.
+ * <p>
+ * Batch operations are split by node and sent in rounds: every round pipelines
+ * up to {@link #MAX_ROUND_BYTES} of requests to each node, and all nodes are queried
+ * before any response of the round is read, so a small batch costs about one round trip.
+ * Requests of a round fit into socket buffers, so sending never waits for a node
+ * which has stopped reading until its responses are read (at 4MB of pending output
+ * for {@link ycache.server.MemcachedServer}). Keys should be printable ASCII without spaces,
+ * values are converted by {@link Serializer}. Node failures are thrown as
+ * {@link java.io.UncheckedIOException}.
+ * <p>
+ * Nodes can't list their keys and evict by themselves, so {@link #keys()},
+ * {@link #values()} and {@link #free(int)} are not supported.
+ *
+ * @version 1.0
+ */
+public class DistributedCache<V> implements Cache<String,V>, Closeable {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(DistributedCache.class);
+
+    // Default number of points of every node on the ring
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+    // Max number of request bytes sent to a node before responses are read, one request may be larger
+    public static final int MAX_ROUND_BYTES = 32 * 1024;
+    // Bytes of request besides key and data
+    private static final int REQUEST_OVERHEAD = 32;
+
+    // Nodes are locked in order of address, so batches never deadlock
+    private static final Comparator<MemcachedClient> ORDER = new Comparator<MemcachedClient>() {
+        @Override
+        public int compare(MemcachedClient a, MemcachedClient b) {
+            return a.toString().compareTo(b.toString());
+        }
+    };
+
+    private final HashRing<MemcachedClient> ring;
+    // Clients by node address
+    private final Map<String,MemcachedClient> clients = new ConcurrentHashMap<String, MemcachedClient>();
+    private final Serializer<V> serializer;
+
+    /**
+     * Constructor that supports specifying number of virtual nodes.
+     *
+     * @param serializer Serializer of values
+     * @param virtualNodes Number of points of every node on the ring
+     */
+    public DistributedCache(Serializer<V> serializer, int virtualNodes) {
+        this.serializer = serializer;
+        this.ring = new HashRing<MemcachedClient>(virtualNodes);
+    }
+
+    public DistributedCache(Serializer<V> serializer) {
+        this(serializer, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Adds node to cluster. Keys of ranges it takes from other nodes become misses.
+     *
+     * @param host Node host
+     * @param port Node port
+     */
+    public synchronized void addNode(String host, int port) {
+        MemcachedClient client = new MemcachedClient(host, port);
+        if (clients.putIfAbsent(client.toString(), client) != null) return;
+        ring.add(client);
+        LOG.info("Node " + client + " was added to cluster");
+    }
+
+    /**
+     * Removes node from cluster, its keys are spread over other nodes.
+     *
+     * @param host Node host
+     * @param port Node port
+     */
+    public synchronized void removeNode(String host, int port) {
+        MemcachedClient client = clients.remove(host + ":" + port);
+        if (client == null) return;
+        ring.remove(client);
+        client.close();
+        LOG.info("Node " + client + " was removed from cluster");
+    }
+
+    /**
+     * @return Addresses of nodes
+     */
+    public List<String> getNodes() {
+        List<String> res = new ArrayList<String>();
+        for (MemcachedClient client : ring.getNodes()) {
+            res.add(client.toString());
+        }
+        return res;
+    }
+
+    @Override
+    public void put(String key, V value) {
+        if (key == null || value == null) throw new NullPointerException("Null keys and values are not supported");
+        nodeFor(key).set(key, serializer.serialize(value));
+    }
+
+    @Override
+    public V get(String key) {
+        byte[] data = nodeFor(key).get(key);
+        return data == null ? null : serializer.deserialize(data);
+    }
+
+    @Override
+    public void remove(String key) {
+        nodeFor(key).delete(key);
+    }
+
+    /**
+     * Clears all nodes.
+     */
+    @Override
+    public void clear() {
+        for (MemcachedClient client : ring.getNodes()) {
+            client.flushAll();
+        }
+    }
+
+    /**
+     * @return Total number of elements of all nodes
+     */
+    @Override
+    public long size() {
+        long size = 0;
+        for (MemcachedClient client : ring.getNodes()) {
+            String items = client.stats().get("curr_items");
+            if (items != null) size += Long.parseLong(items);
+        }
+        return size;
+    }
+
+    @Override
+    public Set<String> keys() {
+        throw new UnsupportedOperationException("Keys of nodes can't be listed");
+    }
+
+    @Override
+    public Collection<V> values() {
+        throw new UnsupportedOperationException("Values of nodes can't be listed");
+    }
+
+    @Override
+    public void free(int count) {
+        throw new UnsupportedOperationException("Nodes evict elements by themselves");
+    }
+
+    /**
+     * Same as {@link #get(Object)}: node counts every access.
+     */
+    @Override
+    public V getQuiet(String key) {
+        return get(key);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return nodeFor(key).get(key) != null;
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, V value) {
+        if (key == null || value == null) throw new NullPointerException("Null keys and values are not supported");
+        return nodeFor(key).add(key, serializer.serialize(value));
+    }
+
+    /**
+     * Gets elements of every node with pipelined requests, in rounds.
+     *
+     * @param keys Value keys
+     * @return Cached values for keys, keys without value are absent
+     */
+    @Override
+    public Map<String,V> getAll(Collection<? extends String> keys) {
+        final Map<String,byte[]> values = new HashMap<String, byte[]>();
+        execute(split(keys, null), new Pipeline() {
+            private final Map<MemcachedClient,Integer> commands = new HashMap<MemcachedClient, Integer>();
+
+            @Override
+            public void send(MemcachedClient client, List<String> keys) throws IOException {
+                commands.put(client, client.sendGets(keys));
+            }
+
+            @Override
+            public void receive(MemcachedClient client, List<String> keys) throws IOException {
+                client.receiveValues(commands.get(client), values);
+            }
+        });
+        Map<String,V> res = new HashMap<String, V>();
+        for (Map.Entry<String,byte[]> entry : values.entrySet()) {
+            res.put(entry.getKey(), serializer.deserialize(entry.getValue()));
+        }
+        return res;
+    }
+
+    /**
+     * Puts elements to every node with pipelined requests, in rounds.
+     *
+     * @param elements Keys and values
+     */
+    @Override
+    public void putAll(Map<? extends String, ? extends V> elements) {
+        final Map<String,byte[]> data = new HashMap<String, byte[]>();
+        for (Map.Entry<? extends String, ? extends V> entry : elements.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null)
+                throw new NullPointerException("Null keys and values are not supported");
+            data.put(entry.getKey(), serializer.serialize(entry.getValue()));
+        }
+        execute(split(data.keySet(), data), new Pipeline() {
+            @Override
+            public void send(MemcachedClient client, List<String> keys) throws IOException {
+                for (String key : keys) {
+                    client.sendStore("set", key, data.get(key));
+                }
+            }
+
+            @Override
+            public void receive(MemcachedClient client, List<String> keys) throws IOException {
+                for (int i = 0; i < keys.size(); i++) {
+                    client.receiveStored();
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes elements from every node with pipelined requests, in rounds.
+     *
+     * @param keys Keys of values to be removed
+     */
+    @Override
+    public void removeAll(Collection<? extends String> keys) {
+        execute(split(keys, null), new Pipeline() {
+            @Override
+            public void send(MemcachedClient client, List<String> keys) throws IOException {
+                for (String key : keys) {
+                    client.sendDelete(key);
+                }
+            }
+
+            @Override
+            public void receive(MemcachedClient client, List<String> keys) throws IOException {
+                for (int i = 0; i < keys.size(); i++) {
+                    client.receiveDeleted();
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes connections to all nodes.
+     */
+    @Override
+    public synchronized void close() {
+        for (MemcachedClient client : clients.values()) {
+            client.close();
+        }
+    }
+
+    private MemcachedClient nodeFor(String key) {
+        MemcachedClient client = ring.nodeFor(key);
+        if (client == null) throw new IllegalStateException("Cluster has no nodes");
+        return client;
+    }
+
+    /**
+     * Splits keys by node and every node's keys by round. Keys are checked first,
+     * so a bad key doesn't stop batch halfway.
+     *
+     * @param data Data of keys, or null if requests have no data
+     * @return Keys of every round of every node, nodes in lock order
+     */
+    private Map<MemcachedClient,List<List<String>>> split(Collection<? extends String> keys, Map<String,byte[]> data) {
+        Map<MemcachedClient,List<List<String>>> res = new TreeMap<MemcachedClient, List<List<String>>>(ORDER);
+        Map<MemcachedClient,Integer> roundBytes = new HashMap<MemcachedClient, Integer>();
+        for (String key : keys) {
+            MemcachedClient.check(key);
+            MemcachedClient client = nodeFor(key);
+            List<List<String>> rounds = res.get(client);
+            if (rounds == null) {
+                rounds = new ArrayList<List<String>>();
+                res.put(client, rounds);
+            }
+            int bytes = key.length() + REQUEST_OVERHEAD + (data == null ? 0 : data.get(key).length);
+            Integer used = roundBytes.get(client);
+            if (used == null || used + bytes > MAX_ROUND_BYTES) {
+                rounds.add(new ArrayList<String>());
+                used = 0;
+            }
+            rounds.get(rounds.size() - 1).add(key);
+            roundBytes.put(client, used + bytes);
+        }
+        return res;
+    }
+
+    /**
+     * Sends requests of a round to all nodes, then reads their responses, round by round.
+     * Nodes are locked for the whole batch.
+     */
+    private static void execute(Map<MemcachedClient,List<List<String>>> batches, Pipeline pipeline) {
+        List<MemcachedClient> locked = lockAll(batches.keySet());
+        MemcachedClient current = null;
+        try {
+            for (int round = 0; ; round++) {
+                boolean sent = false;
+                for (Map.Entry<MemcachedClient,List<List<String>>> batch : batches.entrySet()) {
+                    if (round >= batch.getValue().size()) continue;
+                    current = batch.getKey();
+                    pipeline.send(current, batch.getValue().get(round));
+                    current.flush();
+                    sent = true;
+                }
+                if (!sent) break;
+                for (Map.Entry<MemcachedClient,List<List<String>>> batch : batches.entrySet()) {
+                    if (round >= batch.getValue().size()) continue;
+                    current = batch.getKey();
+                    pipeline.receive(current, batch.getValue().get(round));
+                }
+            }
+        } catch (IOException e) {
+            throw failAll(locked, current, e);
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    private static List<MemcachedClient> lockAll(Collection<MemcachedClient> clients) {
+        List<MemcachedClient> locked = new ArrayList<MemcachedClient>(clients.size());
+        for (MemcachedClient client : clients) {
+            client.lock();
+            locked.add(client);
+        }
+        return locked;
+    }
+
+    /**
+     * Drops connections of all nodes of a failed batch, as their responses were not read.
+     */
+    private static RuntimeException failAll(List<MemcachedClient> clients, MemcachedClient failed, IOException e) {
+        for (MemcachedClient client : clients) {
+            if (client != failed) client.fail(e);
+        }
+        return failed.fail(e);
+    }
+
+    private static void unlockAll(List<MemcachedClient> clients) {
+        for (MemcachedClient client : clients) {
+            client.unlock();
+        }
+    }
+
+    /**
+     * Requests and responses of one kind of batch operation.
+     */
+    private interface Pipeline {
+
+        /**
+         * Buffers requests of keys, called under the client lock.
+         */
+        void send(MemcachedClient client, List<String> keys) throws IOException;
+
+        /**
+         * Reads responses of requests sent for the same keys.
+         */
+        void receive(MemcachedClient client, List<String> keys) throws IOException;
+    }
+}
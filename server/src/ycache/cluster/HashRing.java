@@ -0,0 +1,154 @@
+package ycache.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Consistent-hash ring which maps keys to nodes. Every node owns a number of virtual
+ * nodes, points on the ring of 64-bit hashes; key belongs to the node of the first point
+ * at or after its hash. Adding or removing one of N nodes moves only the keys of
+ * the ranges it takes or gives back, about 1/N of all keys.
+ * <p>
+ * Ring is immutable between changes: lookups read a snapshot of sorted points
+ * without locking, changes build a new snapshot.
+ * @version 1.0
+ */
+public class HashRing<N> {
+
+    private final int virtualNodes;
+    // Nodes in order of addition
+    private final Set<N> nodes = new LinkedHashSet<N>();
+    private volatile Snapshot<N> snapshot = new Snapshot<N>(new long[0], new Object[0]);
+
+    /**
+     * Constructor.
+     *
+     * @param virtualNodes Number of points of every node on the ring
+     */
+    public HashRing(int virtualNodes) {
+        if (virtualNodes <= 0) throw new IllegalArgumentException("Number of virtual nodes should be positive: " + virtualNodes);
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Adds node to ring. Node is identified by its {@code toString()}, which should be stable.
+     *
+     * @param node Node
+     * @return false if ring already contains node
+     */
+    public synchronized boolean add(N node) {
+        if (!nodes.add(node)) return false;
+        rebuild();
+        return true;
+    }
+
+    /**
+     * Removes node from ring.
+     *
+     * @param node Node
+     * @return false if ring doesn't contain node
+     */
+    public synchronized boolean remove(N node) {
+        if (!nodes.remove(node)) return false;
+        rebuild();
+        return true;
+    }
+
+    /**
+     * @return Snapshot of nodes
+     */
+    public synchronized List<N> getNodes() {
+        return Collections.unmodifiableList(new ArrayList<N>(nodes));
+    }
+
+    /**
+     * Returns node which owns key.
+     *
+     * @param key Key
+     * @return Node or null if ring is empty
+     */
+    public N nodeFor(String key) {
+        Snapshot<N> snapshot = this.snapshot;
+        if (snapshot.points.length == 0) return null;
+        int i = Arrays.binarySearch(snapshot.points, hash(key));
+        if (i < 0) i = -i - 1;
+        if (i == snapshot.points.length) i = 0;
+        return snapshot.owner(i);
+    }
+
+    private void rebuild() {
+        int count = nodes.size() * virtualNodes;
+        long[] hashes = new long[count];
+        Object[] owners = new Object[count];
+        int n = 0;
+        for (N node : nodes) {
+            String id = node.toString();
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[n] = hash(id + "#" + v);
+                owners[n] = node;
+                n++;
+            }
+        }
+        // Sort points, keeping owners aligned
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        final long[] unsorted = hashes;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(unsorted[a], unsorted[b]);
+            }
+        });
+        long[] points = new long[count];
+        Object[] sortedOwners = new Object[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = unsorted[order[i]];
+            sortedOwners[i] = owners[order[i]];
+        }
+        snapshot = new Snapshot<N>(points, sortedOwners);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of UTF-8 bytes, with final mixing of MurmurHash3,
+     * so that similar keys are spread over the whole ring.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Sorted points of ring and their nodes.
+     */
+    private static final class Snapshot<N> {
+        final long[] points;
+        final Object[] owners;
+
+        Snapshot(long[] points, Object[] owners) {
+            this.points = points;
+            this.owners = owners;
+        }
+
+        @SuppressWarnings("unchecked")
+        N owner(int i) {
+            return (N) owners[i];
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package ycache.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client of one memcached text protocol server over a single connection.
+ * Requests of concurrent callers are serialized by the client lock.
+ * Connection is opened on first request and reopened after failure;
+ * I/O errors are thrown as {@link UncheckedIOException}.
+ * <p>
+ * Several requests may be pipelined: {@code send...} methods only buffer requests,
+ * responses are read in the same order by {@code receive...} methods,
+ * all under the client lock. {@link DistributedCache} uses it to query
+ * several nodes at once.
+ * @version 1.0
+ */
+public class MemcachedClient implements Closeable {
+
+    // Max length of key by protocol
+    private static final int MAX_KEY = 250;
+    // Max length of get command, longer ones are split. Server accepts lines up to 2048 bytes.
+    private static final int MAX_GET_LINE = 2000;
+
+    private final String host;
+    private final int port;
+    private final int timeoutMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Connection, guarded by lock
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param host Server host
+     * @param port Server port
+     * @param timeoutMillis Timeout of connect and read
+     */
+    public MemcachedClient(String host, int port, int timeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public MemcachedClient(String host, int port) {
+        this(host, port, 5000);
+    }
+
+    /**
+     * @param key Key
+     * @return Value or null if server has no such key
+     */
+    public byte[] get(String key) {
+        return getAll(Collections.singletonList(key)).get(key);
+    }
+
+    /**
+     * @param keys Keys
+     * @return Values, keys without value are absent
+     */
+    public Map<String,byte[]> getAll(Collection<String> keys) {
+        lock.lock();
+        try {
+            int commands = sendGets(keys);
+            flush();
+            Map<String,byte[]> res = new HashMap<String, byte[]>();
+            receiveValues(commands, res);
+            return res;
+        } catch (IOException e) {
+            throw fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void set(String key, byte[] data) {
+        store("set", key, data);
+    }
+
+    /**
+     * @return true if value was stored, false if server already has key
+     */
+    public boolean add(String key, byte[] data) {
+        return store("add", key, data);
+    }
+
+    /**
+     * @return true if key was deleted, false if server has no such key
+     */
+    public boolean delete(String key) {
+        lock.lock();
+        try {
+            sendDelete(key);
+            flush();
+            return receiveDeleted();
+        } catch (IOException e) {
+            throw fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all keys from server.
+     */
+    public void flushAll() {
+        lock.lock();
+        try {
+            write("flush_all\r\n");
+            flush();
+            expect("OK");
+        } catch (IOException e) {
+            throw fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Server statistics by name
+     */
+    public Map<String,String> stats() {
+        lock.lock();
+        try {
+            write("stats\r\n");
+            flush();
+            Map<String,String> res = new LinkedHashMap<String, String>();
+            String line;
+            while (!"END".equals(line = readLine())) {
+                String[] tokens = line.split(" ", 3);
+                if (tokens.length < 3 || !"STAT".equals(tokens[0])) throw new IOException("Unexpected response: " + line);
+                res.put(tokens[1], tokens[2]);
+            }
+            return res;
+        } catch (IOException e) {
+            throw fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes connection, client can't be used after that.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            disconnect();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+
+    void lock() {
+        lock.lock();
+    }
+
+    void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Buffers get commands of keys. Should be called under the client lock.
+     *
+     * @return Number of commands, i.e. of responses to receive
+     */
+    int sendGets(Collection<String> keys) throws IOException {
+        for (String key : keys) {
+            check(key);
+        }
+        int commands = 0;
+        StringBuilder line = new StringBuilder("get");
+        for (String key : keys) {
+            if (line.length() + key.length() + 1 > MAX_GET_LINE) {
+                write(line.append("\r\n").toString());
+                commands++;
+                line.setLength(0);
+                line.append("get");
+            }
+            line.append(' ').append(key);
+        }
+        if (line.length() > 3) {
+            write(line.append("\r\n").toString());
+            commands++;
+        }
+        return commands;
+    }
+
+    /**
+     * Reads values of given number of get commands.
+     */
+    void receiveValues(int commands, Map<String,byte[]> res) throws IOException {
+        for (int i = 0; i < commands; i++) {
+            String line;
+            while (!"END".equals(line = readLine())) {
+                String[] tokens = line.split(" ");
+                if (tokens.length < 4 || !"VALUE".equals(tokens[0])) throw new IOException("Unexpected response: " + line);
+                byte[] data;
+                try {
+                    data = new byte[Integer.parseInt(tokens[3])];
+                } catch (NumberFormatException e) {
+                    throw new IOException("Unexpected response: " + line);
+                }
+                readFully(data);
+                expect("");
+                res.put(tokens[1], data);
+            }
+        }
+    }
+
+    /**
+     * Buffers storage command.
+     */
+    void sendStore(String command, String key, byte[] data) throws IOException {
+        check(key);
+        write(command + " " + key + " 0 0 " + data.length + "\r\n");
+        out.write(data);
+        write("\r\n");
+    }
+
+    /**
+     * @return true if value was stored
+     */
+    boolean receiveStored() throws IOException {
+        String line = readLine();
+        if ("STORED".equals(line)) return true;
+        if ("NOT_STORED".equals(line)) return false;
+        throw new IOException("Unexpected response: " + line);
+    }
+
+    void sendDelete(String key) throws IOException {
+        check(key);
+        write("delete " + key + "\r\n");
+    }
+
+    /**
+     * @return true if key was deleted
+     */
+    boolean receiveDeleted() throws IOException {
+        String line = readLine();
+        if ("DELETED".equals(line)) return true;
+        if ("NOT_FOUND".equals(line)) return false;
+        throw new IOException("Unexpected response: " + line);
+    }
+
+    void flush() throws IOException {
+        connect();
+        out.flush();
+    }
+
+    /**
+     * Drops connection after failure, so that next request starts with a clean stream.
+     */
+    UncheckedIOException fail(IOException e) {
+        disconnect();
+        return new UncheckedIOException("Request to " + this + " failed", e);
+    }
+
+    private boolean store(String command, String key, byte[] data) {
+        lock.lock();
+        try {
+            sendStore(command, key, data);
+            flush();
+            return receiveStored();
+        } catch (IOException e) {
+            throw fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void connect() throws IOException {
+        if (socket != null) return;
+        if (closed) throw new IOException("Client is closed");
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), timeoutMillis);
+            s.setSoTimeout(timeoutMillis);
+            s.setTcpNoDelay(true);
+            in = new BufferedInputStream(s.getInputStream(), 64 * 1024);
+            out = new BufferedOutputStream(s.getOutputStream(), 64 * 1024);
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
+        socket = s;
+    }
+
+    private void disconnect() {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Connection is dropped anyway
+        }
+        socket = null;
+        in = null;
+        out = null;
+    }
+
+    private void write(String s) throws IOException {
+        connect();
+        out.write(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) throw new EOFException("Connection closed by " + this);
+            if (b != '\r') sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+    private void readFully(byte[] data) throws IOException {
+        int n = 0;
+        while (n < data.length) {
+            int count = in.read(data, n, data.length - n);
+            if (count < 0) throw new EOFException("Connection closed by " + this);
+            n += count;
+        }
+    }
+
+    private void expect(String response) throws IOException {
+        String line = readLine();
+        if (!response.equals(line)) throw new IOException("Unexpected response: " + line);
+    }
+
+    /**
+     * Checks that key can be sent by protocol, so a batch is not stopped halfway.
+     */
+    static void check(String key) {
+        if (key.isEmpty() || key.length() > MAX_KEY) throw new IllegalArgumentException("Bad key length: " + key);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c <= ' ' || c >= 0x7f) throw new IllegalArgumentException("Key should be printable ASCII without spaces: " + key);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ycache.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * State of client connection: buffer of received bytes and queue of responses not written yet.
+ * Used only by the selector thread.
+ * @version 1.0
+ */
+final class Connection {
+
+    // Initial size of input buffer, it grows for large values
+    private static final int INPUT_SIZE = 16 * 1024;
+    // Max number of buffers written by one call
+    private static final int MAX_GATHER = 64;
+
+    final SocketChannel channel;
+    // Received bytes, in write mode between reads
+    ByteBuffer in = ByteBuffer.allocate(INPUT_SIZE);
+    // Client asked to close connection, it is closed when responses are written
+    boolean closing = false;
+
+    private final ArrayDeque<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    // Bytes of responses not written yet
+    private long pending = 0;
+
+    Connection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Queues response buffers. Buffers are written as they are, without copying.
+     */
+    void reply(ByteBuffer... buffers) {
+        for (ByteBuffer buffer : buffers) {
+            out.add(buffer);
+            pending += buffer.remaining();
+        }
+    }
+
+    /**
+     * Writes queued responses with gathering writes, until socket buffer is full.
+     *
+     * @return true if all responses were written
+     */
+    boolean flush() throws IOException {
+        while (!out.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer buffer : out) {
+                if (count == MAX_GATHER) break;
+                gather[count++] = buffer;
+            }
+            long written = channel.write(gather, 0, count);
+            pending -= written;
+            while (!out.isEmpty() && !out.peek().hasRemaining()) {
+                out.poll();
+            }
+            for (int i = 0; i < count; i++) {
+                gather[i] = null;
+            }
+            if (written == 0) return false;
+        }
+        return true;
+    }
+
+    long getPending() {
+        return pending;
+    }
+
+    /**
+     * Grows input buffer, so it can hold request of given size.
+     * Called while buffer is in read mode, keeps bytes from its position on and leaves new buffer in read mode.
+     */
+    void ensureCapacity(int size) {
+        if (in.capacity() >= size) return;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(size, in.capacity() * 2));
+        larger.put(in.slice());
+        larger.flip();
+        in = larger;
+    }
+}
@@ -0,0 +1,35 @@
+package ycache.server;
+
+import java.io.Serializable;
+
+/**
+ * Value stored by memcached clients: data with client flags and unique version for {@code gets}.
+ * Item is immutable, data array is shared with responses and must not be changed.
+ * @version 1.0
+ */
+public final class Item implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int flags;
+    private final byte[] data;
+    private final long cas;
+
+    public Item(int flags, byte[] data, long cas) {
+        this.flags = flags;
+        this.data = data;
+        this.cas = cas;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public long getCas() {
+        return cas;
+    }
+}
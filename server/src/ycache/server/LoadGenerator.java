@@ -0,0 +1,255 @@
+package ycache.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator for memcached text protocol servers. Every connection is served by
+ * its own thread, which sends batches of pipelined {@code get} and {@code set} requests
+ * of random keys and reads responses of the whole batch.
+ * <p>
+ * Usage: {@code LoadGenerator host port [connections] [pipeline] [seconds] [keys] [valueSize] [getRatio]}.
+ *
+ * @version 1.0
+ */
+public class LoadGenerator {
+
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final int pipeline;
+    private final int keys;
+    private final int valueSize;
+    private final double getRatio;
+
+    /**
+     * Constructor.
+     *
+     * @param host Server host
+     * @param port Server port
+     * @param connections Number of connections
+     * @param pipeline Number of requests sent before responses are read
+     * @param keys Number of distinct keys
+     * @param valueSize Size of values
+     * @param getRatio Fraction of gets among requests
+     */
+    public LoadGenerator(String host, int port, int connections, int pipeline, int keys, int valueSize,
+                         double getRatio) {
+        if (connections <= 0 || pipeline <= 0 || keys <= 0 || valueSize < 0)
+            throw new IllegalArgumentException("Connections, pipeline and keys should be positive");
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        this.pipeline = pipeline;
+        this.keys = keys;
+        this.valueSize = valueSize;
+        this.getRatio = getRatio;
+    }
+
+    /**
+     * Sends given number of requests through every connection.
+     *
+     * @param requests Number of requests per connection
+     * @return Result of run
+     * @throws IOException if connection fails
+     */
+    public Result run(long requests) throws IOException, InterruptedException {
+        return run(requests, Long.MAX_VALUE);
+    }
+
+    /**
+     * Sends requests during given time.
+     *
+     * @param duration Time of run
+     * @param unit Unit of time
+     * @return Result of run
+     * @throws IOException if connection fails
+     */
+    public Result run(long duration, TimeUnit unit) throws IOException, InterruptedException {
+        return run(Long.MAX_VALUE, System.nanoTime() + unit.toNanos(duration));
+    }
+
+    private Result run(final long requests, final long deadline) throws IOException, InterruptedException {
+        final Result result = new Result();
+        final AtomicReference<IOException> error = new AtomicReference<IOException>();
+        Thread[] threads = new Thread[connections];
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            final long seed = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        load(new Random(seed), requests, deadline, result);
+                    } catch (IOException e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            }, "ycache-load-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        result.nanos = System.nanoTime() - start;
+        if (error.get() != null) throw error.get();
+        return result;
+    }
+
+    private void load(Random rnd, long requests, long deadline, Result result) throws IOException {
+        byte[] value = new byte[valueSize];
+        Arrays.fill(value, (byte) 'x');
+        boolean[] gets = new boolean[pipeline];
+        Socket socket = new Socket(host, port);
+        try {
+            socket.setTcpNoDelay(true);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            long sent = 0;
+            while (sent < requests && System.nanoTime() < deadline) {
+                int batch = (int) Math.min(pipeline, requests - sent);
+                for (int i = 0; i < batch; i++) {
+                    String key = "key" + rnd.nextInt(keys);
+                    gets[i] = rnd.nextDouble() < getRatio;
+                    if (gets[i]) {
+                        out.write(bytes("get " + key + "\r\n"));
+                    } else {
+                        out.write(bytes("set " + key + " 0 0 " + valueSize + "\r\n"));
+                        out.write(value);
+                        out.write(bytes("\r\n"));
+                    }
+                }
+                out.flush();
+                for (int i = 0; i < batch; i++) {
+                    if (gets[i]) readGet(in, result);
+                    else readSet(in, result);
+                }
+                sent += batch;
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static void readGet(InputStream in, Result result) throws IOException {
+        String line = readLine(in);
+        if ("END".equals(line)) {
+            result.misses.increment();
+            return;
+        }
+        String[] tokens = line.split(" ");
+        if (tokens.length < 4 || !"VALUE".equals(tokens[0])) {
+            result.errors.increment();
+            return;
+        }
+        long size = Long.parseLong(tokens[3]) + 2;
+        while (size > 0) {
+            long skipped = in.skip(size);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new EOFException("Connection closed by server");
+                skipped = 1;
+            }
+            size -= skipped;
+        }
+        if ("END".equals(readLine(in)))
+            result.hits.increment();
+        else
+            result.errors.increment();
+    }
+
+    private static void readSet(InputStream in, Result result) throws IOException {
+        if ("STORED".equals(readLine(in)))
+            result.sets.increment();
+        else
+            result.errors.increment();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) throw new EOFException("Connection closed by server");
+            if (b != '\r') sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Counters of a load run.
+     */
+    public static final class Result {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder sets = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private long nanos;
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public long getSets() {
+            return sets.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * @return Number of answered requests, including errors
+         */
+        public long getRequests() {
+            return getHits() + getMisses() + getSets() + getErrors();
+        }
+
+        /**
+         * @return Requests per second
+         */
+        public double throughput() {
+            return nanos == 0 ? 0 : getRequests() * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Result(requests=%d,hits=%d,misses=%d,sets=%d,errors=%d,throughput=%.0f/s)",
+                    getRequests(), getHits(), getMisses(), getSets(), getErrors(), throughput());
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: LoadGenerator host port [connections] [pipeline] [seconds] [keys] [valueSize] [getRatio]");
+            System.exit(1);
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int pipeline = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        int keys = args.length > 5 ? Integer.parseInt(args[5]) : 100000;
+        int valueSize = args.length > 6 ? Integer.parseInt(args[6]) : 100;
+        double getRatio = args.length > 7 ? Double.parseDouble(args[7]) : 0.9;
+        LoadGenerator generator = new LoadGenerator(host, port, connections, pipeline, keys, valueSize, getRatio);
+        System.out.println(generator.run(seconds, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,496 @@
+package ycache.server;
+
+import org.apache.log4j.Logger;
+import ycache.Cache;
+import ycache.CacheStats;
+import ycache.ExpiringCache;
+import ycache.SimpleCache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server which exposes {@link Cache} over TCP using memcached text protocol, so that
+ * clients in any language can share one cache process.
+ * Supported commands: {@code get} and {@code gets} of several keys, {@code set}, {@code add}
+ * (mapped to {@link Cache#putIfAbsent(Object, Object)}), {@code delete}, {@code flush_all}
+ * (mapped to {@link Cache#clear()}, without delay), {@code stats}, {@code version} and {@code quit}.
+ * Expiration time is honored if cache is {@link ExpiringCache}.
+ * <p>
+ * All connections are served by a single thread with non-blocking NIO selector.
+ * Clients may pipeline requests: every complete request in the input buffer is
+ * executed and responses are written in order. Values are written directly
+ * from cached arrays by gathering writes, without copying them to output buffers.
+ * If a client doesn't read responses, server stops reading its requests.
+ *
+ * @version 1.0
+ */
+public class MemcachedServer implements Closeable {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(MemcachedServer.class);
+
+    public static final int DEFAULT_PORT = 11211;
+    public static final String VERSION = "1.0";
+
+    // Max length of command line, longer line is a protocol error
+    private static final int MAX_LINE = 2048;
+    // Max size of value
+    private static final int MAX_VALUE = 1024 * 1024;
+    // Max length of key by protocol
+    private static final int MAX_KEY = 250;
+    // Requests of client are not read while it has more bytes of responses not written yet
+    private static final long MAX_PENDING = 4 * 1024 * 1024;
+    // Larger expiration time is absolute Unix time, smaller one is relative
+    private static final long MAX_RELATIVE_EXPIRATION = TimeUnit.DAYS.toSeconds(30);
+
+    private static final byte[] CRLF = bytes("\r\n");
+    private static final byte[] END = bytes("END\r\n");
+    private static final byte[] STORED = bytes("STORED\r\n");
+    private static final byte[] NOT_STORED = bytes("NOT_STORED\r\n");
+    private static final byte[] DELETED = bytes("DELETED\r\n");
+    private static final byte[] NOT_FOUND = bytes("NOT_FOUND\r\n");
+    private static final byte[] ERROR = bytes("ERROR\r\n");
+    private static final byte[] OK = bytes("OK\r\n");
+
+    private final Cache<String,Item> cache;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private Thread thread;
+    private volatile boolean running = true;
+
+    // Version of items for gets
+    private final AtomicLong casUnique = new AtomicLong();
+    private final long startMillis = System.currentTimeMillis();
+
+    // Statistics, changed only by the selector thread
+    private volatile long currentConnections = 0;
+    private volatile long totalConnections = 0;
+    private volatile long getCommands = 0;
+    private volatile long setCommands = 0;
+    private volatile long hits = 0;
+    private volatile long misses = 0;
+
+    /**
+     * Creates server and binds it to address. Server accepts connections after {@link #start()}.
+     *
+     * @param cache Cache of items
+     * @param address Address to listen, port 0 for any free port
+     * @throws IOException if address can't be bound
+     */
+    public MemcachedServer(Cache<String,Item> cache, InetSocketAddress address) throws IOException {
+        this.cache = cache;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(address);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        LOG.info("Memcached server created (address=" + server.getLocalAddress() + ")");
+    }
+
+    /**
+     * Starts selector thread.
+     */
+    public synchronized void start() {
+        if (thread != null) throw new IllegalStateException("Server is already started");
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "ycache-server");
+        thread.start();
+    }
+
+    /**
+     * @return Port server listens to
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Stops server and closes all connections.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        LOG.info("Memcached server stopped");
+    }
+
+    private void serve() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                LOG.error("Selector failed", e);
+                return;
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable() && connection.channel.read(connection.in) < 0) {
+                            disconnect(key);
+                            continue;
+                        }
+                        service(key, connection);
+                    }
+                } catch (IOException e) {
+                    if (key.attachment() == null) {
+                        LOG.warn("Connection can't be accepted", e);
+                        continue;
+                    }
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Connection failed", e);
+                    disconnect(key);
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+        currentConnections++;
+        totalConnections++;
+    }
+
+    private void disconnect(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            LOG.warn("Connection can't be closed", e);
+        }
+        currentConnections--;
+    }
+
+    /**
+     * Executes received requests, writes responses and decides what to wait for next.
+     */
+    private void service(SelectionKey key, Connection connection) throws IOException {
+        connection.in.flip();
+        try {
+            process(connection);
+        } finally {
+            connection.in.compact();
+        }
+        boolean written = connection.flush();
+        if (connection.closing && written) {
+            disconnect(key);
+            return;
+        }
+        int ops = written ? 0 : SelectionKey.OP_WRITE;
+        if (!connection.closing && connection.getPending() < MAX_PENDING) ops |= SelectionKey.OP_READ;
+        key.interestOps(ops);
+    }
+
+    /**
+     * Executes complete requests from input buffer, incomplete one stays in buffer.
+     */
+    private void process(Connection connection) {
+        ByteBuffer in = connection.in;
+        while (!connection.closing && connection.getPending() < MAX_PENDING && in.hasRemaining()) {
+            int start = in.position();
+            int eol = indexOf(in, (byte) '\n');
+            if (eol < 0) {
+                if (in.remaining() > MAX_LINE) {
+                    clientError(connection, "line is too long");
+                    connection.closing = true;
+                }
+                return;
+            }
+            int end = eol > start && in.get(eol - 1) == '\r' ? eol - 1 : eol;
+            String[] tokens = tokenize(in, start, end);
+            if (tokens.length == 0) {
+                in.position(eol + 1);
+                connection.reply(ByteBuffer.wrap(ERROR));
+                continue;
+            }
+            String command = tokens[0];
+            if ("set".equals(command) || "add".equals(command)) {
+                int size = tokens.length >= 5 ? parseInt(tokens[4]) : -1;
+                if (size < 0 || size > MAX_VALUE) {
+                    // Size of data is unknown, so rest of stream can't be parsed
+                    connection.reply(ByteBuffer.wrap(bytes(size > MAX_VALUE ?
+                            "SERVER_ERROR object too large for cache\r\n" : "CLIENT_ERROR bad command line format\r\n")));
+                    connection.closing = true;
+                    return;
+                }
+                int dataStart = eol + 1;
+                if (in.limit() - dataStart < size + 2) {
+                    // Wait for the rest of data
+                    in.position(start);
+                    connection.ensureCapacity(dataStart - start + size + 2);
+                    return;
+                }
+                byte[] data = new byte[size];
+                in.position(dataStart);
+                in.get(data);
+                boolean terminated = in.get() == '\r' & in.get() == '\n';
+                if (!terminated)
+                    clientError(connection, "bad data chunk");
+                else
+                    store(connection, tokens, data, "add".equals(command));
+            } else {
+                in.position(eol + 1);
+                execute(connection, tokens);
+            }
+        }
+    }
+
+    private void execute(Connection connection, String[] tokens) {
+        String command = tokens[0];
+        if ("get".equals(command) || "gets".equals(command)) {
+            if (tokens.length < 2) {
+                connection.reply(ByteBuffer.wrap(ERROR));
+                return;
+            }
+            get(connection, Arrays.asList(tokens).subList(1, tokens.length), "gets".equals(command));
+        } else if ("delete".equals(command)) {
+            delete(connection, tokens);
+        } else if ("flush_all".equals(command)) {
+            cache.clear();
+            if (!"noreply".equals(tokens[tokens.length - 1])) connection.reply(ByteBuffer.wrap(OK));
+        } else if ("stats".equals(command) && tokens.length == 1) {
+            stats(connection);
+        } else if ("version".equals(command)) {
+            connection.reply(ByteBuffer.wrap(bytes("VERSION " + VERSION + "\r\n")));
+        } else if ("quit".equals(command)) {
+            connection.closing = true;
+        } else {
+            connection.reply(ByteBuffer.wrap(ERROR));
+        }
+    }
+
+    private void get(Connection connection, List<String> keys, boolean withCas) {
+        for (String key : keys) {
+            if (key.length() > MAX_KEY) {
+                clientError(connection, "key is too long");
+                return;
+            }
+        }
+        getCommands += keys.size();
+        Map<String,Item> items = keys.size() == 1 ? null : cache.getAll(keys);
+        for (String key : keys) {
+            Item item = items == null ? cache.get(key) : items.get(key);
+            if (item == null) {
+                misses++;
+                continue;
+            }
+            hits++;
+            String header = "VALUE " + key + " " + Integer.toUnsignedString(item.getFlags()) + " " + item.getData().length
+                    + (withCas ? " " + item.getCas() : "") + "\r\n";
+            connection.reply(ByteBuffer.wrap(bytes(header)), ByteBuffer.wrap(item.getData()), ByteBuffer.wrap(CRLF));
+        }
+        connection.reply(ByteBuffer.wrap(END));
+    }
+
+    /**
+     * Executes {@code <command> <key> <flags> <exptime> <bytes> [noreply]}.
+     */
+    @SuppressWarnings("unchecked")
+    private void store(Connection connection, String[] tokens, byte[] data, boolean onlyIfAbsent) {
+        boolean noreply = tokens.length == 6 && "noreply".equals(tokens[5]);
+        String key = tokens[1];
+        long flags = parseLong(tokens[2]);
+        long exptime = parseLong(tokens[3]);
+        if (key.length() > MAX_KEY || flags < 0 || flags > 0xffffffffL || exptime == Long.MIN_VALUE
+                || tokens.length > 6 || (tokens.length == 6 && !noreply)) {
+            clientError(connection, "bad command line format");
+            return;
+        }
+        setCommands++;
+        Item item = new Item((int) flags, data, casUnique.incrementAndGet());
+        long ttl = exptime > MAX_RELATIVE_EXPIRATION ? exptime - System.currentTimeMillis() / 1000 : exptime;
+        boolean stored;
+        if (exptime != 0 && ttl <= 0) {
+            // Item has already expired, it replaces old one but is never seen
+            stored = onlyIfAbsent ? !cache.contains(key) : true;
+            if (!onlyIfAbsent) cache.remove(key);
+        } else if (exptime != 0 && cache instanceof ExpiringCache) {
+            ExpiringCache<String,Item> expiring = (ExpiringCache<String,Item>) cache;
+            if (onlyIfAbsent) {
+                stored = expiring.putIfAbsent(key, item, ttl, 0, TimeUnit.SECONDS);
+            } else {
+                expiring.put(key, item, ttl, 0, TimeUnit.SECONDS);
+                stored = true;
+            }
+        } else if (onlyIfAbsent) {
+            stored = cache.putIfAbsent(key, item);
+        } else {
+            cache.put(key, item);
+            stored = true;
+        }
+        if (!noreply) connection.reply(ByteBuffer.wrap(stored ? STORED : NOT_STORED));
+    }
+
+    /**
+     * Executes {@code delete <key> [0] [noreply]}.
+     */
+    private void delete(Connection connection, String[] tokens) {
+        boolean noreply = "noreply".equals(tokens[tokens.length - 1]);
+        int count = noreply ? tokens.length - 1 : tokens.length;
+        if (count < 2 || count > 3 || (count == 3 && !"0".equals(tokens[2]))) {
+            clientError(connection, "bad command line format");
+            return;
+        }
+        String key = tokens[1];
+        boolean deleted = cache.getQuiet(key) != null;
+        if (deleted) cache.remove(key);
+        if (!noreply) connection.reply(ByteBuffer.wrap(deleted ? DELETED : NOT_FOUND));
+    }
+
+    /**
+     * Reports server counters and counters of {@link SimpleCache} if cache is one.
+     */
+    @SuppressWarnings("unchecked")
+    private void stats(Connection connection) {
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder();
+        stat(sb, "uptime", (now - startMillis) / 1000);
+        stat(sb, "time", now / 1000);
+        sb.append("STAT version ").append(VERSION).append("\r\n");
+        stat(sb, "curr_connections", currentConnections);
+        stat(sb, "total_connections", totalConnections);
+        stat(sb, "curr_items", cache.size());
+        stat(sb, "cmd_get", getCommands);
+        stat(sb, "cmd_set", setCommands);
+        if (cache instanceof SimpleCache) {
+            CacheStats stats = ((SimpleCache<String,Item>) cache).stats();
+            stat(sb, "get_hits", stats.getHitCount());
+            stat(sb, "get_misses", stats.getMissCount());
+            stat(sb, "total_items", stats.getPutCount());
+            stat(sb, "evictions", stats.getEvictionCount());
+        } else {
+            stat(sb, "get_hits", hits);
+            stat(sb, "get_misses", misses);
+        }
+        sb.append("END\r\n");
+        connection.reply(ByteBuffer.wrap(bytes(sb.toString())));
+    }
+
+    private static void stat(StringBuilder sb, String name, long value) {
+        sb.append("STAT ").append(name).append(' ').append(value).append("\r\n");
+    }
+
+    private static void clientError(Connection connection, String message) {
+        connection.reply(ByteBuffer.wrap(bytes("CLIENT_ERROR " + message + "\r\n")));
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte b) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == b) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Splits command line by spaces. Bytes are mapped to chars one to one, so keys keep any bytes.
+     */
+    private static String[] tokenize(ByteBuffer buffer, int start, int end) {
+        List<String> tokens = new ArrayList<String>();
+        int i = start;
+        while (i < end) {
+            while (i < end && buffer.get(i) == ' ') i++;
+            int tokenStart = i;
+            while (i < end && buffer.get(i) != ' ') i++;
+            if (i > tokenStart) {
+                byte[] token = new byte[i - tokenStart];
+                for (int j = 0; j < token.length; j++) {
+                    token[j] = buffer.get(tokenStart + j);
+                }
+                tokens.add(new String(token, StandardCharsets.ISO_8859_1));
+            }
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
+    /**
+     * @return Number or -1 if it is not a non-negative int
+     */
+    private static int parseInt(String s) {
+        long value = parseLong(s);
+        return value < 0 || value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    /**
+     * @return Number or Long.MIN_VALUE if it is not a number
+     */
+    private static long parseLong(String s) {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Starts server with {@link SimpleCache}.
+     *
+     * @param args Port and max number of items, optional
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxSize = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        final MemcachedServer server = new MemcachedServer(new SimpleCache<String, Item>(maxSize),
+                new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    // JVM is stopping anyway
+                }
+            }
+        }));
+        server.start();
+    }
+}
@@ -0,0 +1,162 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ycache.SimpleCache;
+import ycache.cluster.DistributedCache;
+import ycache.cluster.HashRing;
+import ycache.serializer.JavaSerializer;
+import ycache.server.Item;
+import ycache.server.MemcachedServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for DistributedCache and HashRing classes.
+ */
+public class DistributedCacheTest {
+
+    private static final int NODES = 4;
+
+    private final List<SimpleCache<String,Item>> caches = new ArrayList<SimpleCache<String, Item>>();
+    private final List<MemcachedServer> servers = new ArrayList<MemcachedServer>();
+    private DistributedCache<String> cache;
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < NODES; i++) {
+            SimpleCache<String,Item> local = new SimpleCache<String, Item>(10000);
+            MemcachedServer server = new MemcachedServer(local, new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            caches.add(local);
+            servers.add(server);
+        }
+        cache = new DistributedCache<String>(new JavaSerializer<String>());
+        // The last node is added by tests
+        for (int i = 0; i < NODES - 1; i++) {
+            cache.addNode("127.0.0.1", servers.get(i).getPort());
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.close();
+        for (MemcachedServer server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testOperations() {
+        System.out.print("\nTesting distributed cache\n");
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        assertFalse(cache.putIfAbsent("a", "2"));
+        assertTrue(cache.putIfAbsent("b", "2"));
+        assertTrue(cache.contains("b"));
+        cache.remove("a");
+        assertNull(cache.get("a"));
+
+        Map<String,String> batch = new HashMap<String, String>();
+        for (int i = 0; i < 1000; i++) {
+            batch.put("key" + i, "value" + i);
+        }
+        cache.putAll(batch);
+        assertEquals(1001, cache.size());
+        // Every node got its share
+        for (int i = 0; i < NODES - 1; i++) {
+            assertTrue(caches.get(i).size() > 200);
+        }
+        List<String> keys = new ArrayList<String>(batch.keySet());
+        keys.add("missing");
+        Map<String,String> values = cache.getAll(keys);
+        assertEquals(batch, values);
+
+        cache.removeAll(keys.subList(0, 500));
+        assertEquals(501, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLargeBatch() {
+        System.out.print("\nTesting distributed cache batch larger than node output limit\n");
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String big = new String(chars);
+        // Responses of every node are larger than 4MB
+        Map<String,String> batch = new HashMap<String, String>();
+        for (int i = 0; i < 20000; i++) {
+            batch.put("key" + i, big + i);
+        }
+        cache.putAll(batch);
+        assertEquals(20000, cache.size());
+        assertEquals(batch, cache.getAll(batch.keySet()));
+        cache.removeAll(batch.keySet());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testAddNode() {
+        System.out.print("\nTesting distributed cache node addition\n");
+        Map<String,String> batch = new HashMap<String, String>();
+        for (int i = 0; i < 4000; i++) {
+            batch.put("key" + i, "value" + i);
+        }
+        cache.putAll(batch);
+        cache.addNode("127.0.0.1", servers.get(NODES - 1).getPort());
+        assertEquals(NODES, cache.getNodes().size());
+        // Only keys taken by the new node are missing
+        int found = cache.getAll(batch.keySet()).size();
+        assertTrue("Found " + found, found > 4000 * 0.65 && found < 4000 * 0.85);
+        cache.removeNode("127.0.0.1", servers.get(NODES - 1).getPort());
+        assertEquals(4000, cache.getAll(batch.keySet()).size());
+    }
+
+    @Test
+    public void testRing() {
+        System.out.print("\nTesting consistent hash ring\n");
+        HashRing<String> ring = new HashRing<String>(160);
+        assertNull(ring.nodeFor("key"));
+        for (int i = 0; i < 4; i++) {
+            ring.add("node" + i);
+        }
+        Map<String,String> owners = new HashMap<String, String>();
+        Map<String,Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 20000; i++) {
+            String node = ring.nodeFor("key" + i);
+            owners.put("key" + i, node);
+            counts.put(node, counts.containsKey(node) ? counts.get(node) + 1 : 1);
+        }
+        for (int count : counts.values()) {
+            assertTrue("Count " + count, count > 20000 / 4 * 0.8 && count < 20000 / 4 * 1.2);
+        }
+        // Keys move only to the new node
+        ring.add("node4");
+        int moved = 0;
+        for (Map.Entry<String,String> entry : owners.entrySet()) {
+            String node = ring.nodeFor(entry.getKey());
+            if (!node.equals(entry.getValue())) {
+                assertEquals("node4", node);
+                moved++;
+            }
+        }
+        assertTrue("Moved " + moved, moved > 20000 / 5 * 0.8 && moved < 20000 / 5 * 1.2);
+        // Only keys of the removed node move
+        ring.remove("node4");
+        ring.remove("node0");
+        for (Map.Entry<String,String> entry : owners.entrySet()) {
+            if (!"node0".equals(entry.getValue())) assertEquals(entry.getValue(), ring.nodeFor(entry.getKey()));
+        }
+    }
+}
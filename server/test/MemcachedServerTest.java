@@ -0,0 +1,182 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ycache.SimpleCache;
+import ycache.server.Item;
+import ycache.server.LoadGenerator;
+import ycache.server.MemcachedServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for MemcachedServer class.
+ */
+public class MemcachedServerTest {
+
+    private SimpleCache<String,Item> cache;
+    private MemcachedServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new SimpleCache<String, Item>(1000);
+        server = new MemcachedServer(cache, new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testCommands() throws IOException {
+        System.out.print("\nTesting memcached commands\n");
+        Socket socket = new Socket("127.0.0.1", server.getPort());
+        try {
+            assertEquals("STORED\r\n", call(socket, "set a 5 0 3\r\nabc\r\n", 1));
+            assertEquals("NOT_STORED\r\n", call(socket, "add a 0 0 1\r\nx\r\n", 1));
+            assertEquals("STORED\r\n", call(socket, "add b 0 0 2\r\nxy\r\n", 1));
+            assertEquals("VALUE a 5 3\r\nabc\r\nVALUE b 0 2\r\nxy\r\nEND\r\n", call(socket, "get a missing b\r\n", 5));
+            long cas = cache.getQuiet("a").getCas();
+            assertEquals("VALUE a 5 3 " + cas + "\r\nabc\r\nEND\r\n", call(socket, "gets a\r\n", 3));
+            assertEquals("DELETED\r\n", call(socket, "delete a\r\n", 1));
+            assertEquals("NOT_FOUND\r\n", call(socket, "delete a\r\n", 1));
+            // Value may contain line breaks, noreply suppresses response
+            assertEquals("VALUE c 0 4\r\n\r\n\r\n\r\nEND\r\n",
+                    call(socket, "set c 0 0 4 noreply\r\n\r\n\r\n\r\nget c\r\nquit\r\n", 5));
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            socket.close();
+        }
+        socket = new Socket("127.0.0.1", server.getPort());
+        try {
+            assertEquals("ERROR\r\n", call(socket, "incr c 1\r\n", 1));
+            assertEquals("CLIENT_ERROR bad data chunk\r\n", call(socket, "set d 0 0 1\r\nxyz\r\n", 1));
+            String stats = call(socket, "stats\r\n", "END\r\n");
+            assertTrue(stats.contains("STAT curr_items 2\r\n"));
+            assertTrue(stats.contains("STAT get_hits 4\r\n"));
+            assertTrue(stats.contains("STAT get_misses 1\r\n"));
+            assertTrue(stats.contains("STAT cmd_set 4\r\n"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testPipelining() throws IOException {
+        System.out.print("\nTesting memcached pipelining\n");
+        Socket socket = new Socket("127.0.0.1", server.getPort());
+        try {
+            StringBuilder requests = new StringBuilder();
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                requests.append("set key").append(i).append(" 0 0 ").append(String.valueOf(i).length()).append("\r\n")
+                        .append(i).append("\r\nget key").append(i).append("\r\n");
+                expected.append("STORED\r\nVALUE key").append(i).append(" 0 ").append(String.valueOf(i).length())
+                        .append("\r\n").append(i).append("\r\nEND\r\n");
+            }
+            // Requests are sent byte by byte, so they are split at every position
+            OutputStream out = socket.getOutputStream();
+            byte[] bytes = requests.toString().getBytes(StandardCharsets.ISO_8859_1);
+            out.write(bytes, 0, 100);
+            out.flush();
+            for (int i = 100; i < 200; i++) {
+                out.write(bytes[i]);
+                out.flush();
+            }
+            out.write(bytes, 200, bytes.length - 200);
+            out.flush();
+            assertEquals(expected.toString(), read(socket.getInputStream(), expected.length()));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testLargeValue() throws IOException {
+        System.out.print("\nTesting memcached value larger than input buffer\n");
+        Socket socket = new Socket("127.0.0.1", server.getPort());
+        try {
+            StringBuilder data = new StringBuilder();
+            for (int i = 0; data.length() < 100000; i++) {
+                data.append((char) ('a' + i % 26));
+            }
+            // Request before the large one is consumed from the same buffer
+            String expected = "STORED\r\nSTORED\r\nVALUE big 0 100000\r\n" + data + "\r\nEND\r\n";
+            send(socket, "set small 0 0 1\r\nx\r\nset big 0 0 100000\r\n" + data + "\r\nget big\r\n");
+            assertEquals(expected, read(socket.getInputStream(), expected.length()));
+            assertEquals("VALUE small 0 1\r\nx\r\nEND\r\n", call(socket, "get small\r\n", 3));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testLoadGenerator() throws Exception {
+        System.out.print("\nTesting memcached load generator\n");
+        LoadGenerator generator = new LoadGenerator("127.0.0.1", server.getPort(), 4, 16, 2000, 100, 0.8);
+        LoadGenerator.Result result = generator.run(2000);
+        System.out.print(result + "\n");
+        assertEquals(0, result.getErrors());
+        assertEquals(4 * 2000, result.getRequests());
+        assertTrue(result.getHits() > 0);
+        assertEquals(result.getHits() + result.getMisses(), cache.getGets());
+        assertTrue(cache.size() <= 1000);
+    }
+
+    /**
+     * Sends requests and reads response of given number of lines.
+     */
+    private static String call(Socket socket, String requests, int lines) throws IOException {
+        send(socket, requests);
+        InputStream in = socket.getInputStream();
+        ByteArrayOutputStream res = new ByteArrayOutputStream();
+        while (lines > 0) {
+            int b = in.read();
+            if (b < 0) break;
+            res.write(b);
+            if (b == '\n') lines--;
+        }
+        return new String(res.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Sends requests and reads response until given ending.
+     */
+    private static String call(Socket socket, String requests, String ending) throws IOException {
+        send(socket, requests);
+        InputStream in = socket.getInputStream();
+        StringBuilder res = new StringBuilder();
+        while (!res.toString().endsWith(ending)) {
+            int b = in.read();
+            if (b < 0) break;
+            res.append((char) b);
+        }
+        return res.toString();
+    }
+
+    private static String read(InputStream in, int length) throws IOException {
+        StringBuilder res = new StringBuilder();
+        while (res.length() < length) {
+            int b = in.read();
+            if (b < 0) break;
+            res.append((char) b);
+        }
+        return res.toString();
+    }
+
+    private static void send(Socket socket, String requests) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(requests.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+}
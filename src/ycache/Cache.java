@@ -1,6 +1,8 @@
 package ycache;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -82,4 +84,39 @@ public interface Cache<K, V> {
      * @return True if element was put to cache, false if cache already contains it
      */
     boolean putIfAbsent(K key, V value);
+
+    /**
+     * Returns elements from cache. By default gets them one by one,
+     * implementations may override it to process the batch at once.
+     * @param keys Value keys
+     * @return Cached values for keys, keys without value are absent
+     */
+    default Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> res = new HashMap<K, V>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) res.put(key, value);
+        }
+        return res;
+    }
+
+    /**
+     * Puts elements to cache. By default puts them one by one.
+     * @param elements Keys and values
+     */
+    default void putAll(Map<? extends K, ? extends V> elements) {
+        for (Map.Entry<? extends K, ? extends V> entry : elements.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes elements from cache. By default removes them one by one.
+     * @param keys Keys of values to be removed
+     */
+    default void removeAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            remove(key);
+        }
+    }
 }
@@ -0,0 +1,42 @@
+package ycache;
+
+/**
+ * Listener of cache changes, e.g. for tracing.
+ * Cache calls it asynchronously, after the change is made, so listener doesn't slow cache down.
+ * All methods do nothing by default.
+ * @version 1.0
+ */
+public interface CacheEventListener<K, V> {
+
+    /**
+     * Called after element is put to cache.
+     * @param key Key
+     * @param value New value
+     */
+    default void onPut(K key, V value) {
+    }
+
+    /**
+     * Called after element is evicted to free space.
+     * @param key Key
+     * @param value Evicted value
+     */
+    default void onEvict(K key, V value) {
+    }
+
+    /**
+     * Called after element is removed or cache is cleared.
+     * @param key Key
+     * @param value Removed value
+     */
+    default void onRemove(K key, V value) {
+    }
+
+    /**
+     * Called after expired element is removed.
+     * @param key Key
+     * @param value Expired value
+     */
+    default void onExpire(K key, V value) {
+    }
+}
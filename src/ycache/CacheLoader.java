@@ -0,0 +1,47 @@
+package ycache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads values which are missing in cache, e.g. from database.
+ * @version 1.0
+ */
+public interface CacheLoader<K, V> {
+
+    /**
+     * Loads value for key.
+     * @param key Key
+     * @return Value or null if there is no value for key
+     * @throws Exception if value can't be loaded
+     */
+    V load(K key) throws Exception;
+
+    /**
+     * Loads values for several keys. By default loads them one by one,
+     * implementations may override it to load them at once.
+     * @param keys Keys
+     * @return Values found for keys, keys without value may be absent
+     * @throws Exception if values can't be loaded
+     */
+    default Map<K, V> loadAll(Collection<? extends K> keys) throws Exception {
+        Map<K, V> res = new HashMap<K, V>();
+        for (K key : keys) {
+            V value = load(key);
+            if (value != null) res.put(key, value);
+        }
+        return res;
+    }
+
+    /**
+     * Loads new value for key which is already cached, to refresh it. By default loads it as missing one.
+     * @param key Key
+     * @param oldValue Cached value
+     * @return New value or null if there is no value for key anymore
+     * @throws Exception if value can't be loaded
+     */
+    default V reload(K key, V oldValue) throws Exception {
+        return load(key);
+    }
+}
@@ -0,0 +1,14 @@
+package ycache;
+
+/**
+ * Thrown when {@link CacheLoader} fails to load value.
+ * @version 1.0
+ */
+public class CacheLoadingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CacheLoadingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
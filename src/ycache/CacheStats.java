@@ -0,0 +1,99 @@
+package ycache;
+
+/**
+ * Immutable snapshot of cache statistics.
+ *
+ * @version 1.0
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long putCount;
+    private final long evictionCount;
+    private final long loadCount;
+    private final long totalLoadTime;
+
+    /**
+     * Constructor.
+     *
+     * @param hitCount Number of gets which found element
+     * @param missCount Number of gets which didn't find element
+     * @param putCount Number of puts to cache
+     * @param evictionCount Number of evicted elements
+     * @param loadCount Number of loaded values
+     * @param totalLoadTime Time spent loading values, in nanoseconds
+     */
+    public CacheStats(long hitCount, long missCount, long putCount,
+                      long evictionCount, long loadCount, long totalLoadTime) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+        this.evictionCount = evictionCount;
+        this.loadCount = loadCount;
+        this.totalLoadTime = totalLoadTime;
+    }
+
+    /**
+     * @return Number of gets from cache
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getPutCount() {
+        return putCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * @return Time spent loading values, in nanoseconds
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * @return Ratio of gets which found element, 1.0 if there were no gets
+     */
+    public double hitRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * @return Ratio of gets which didn't find element, 0.0 if there were no gets
+     */
+    public double missRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 0.0 : (double) missCount / requests;
+    }
+
+    /**
+     * @return Average time spent loading a value, in nanoseconds
+     */
+    public double averageLoadPenalty() {
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats(hits=%d,misses=%d,puts=%d,evictions=%d,loads=%d,loadTime=%d)",
+                hitCount, missCount, putCount, evictionCount, loadCount, totalLoadTime);
+    }
+}
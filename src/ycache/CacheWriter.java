@@ -0,0 +1,49 @@
+package ycache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes cache changes to underlying store, e.g. to database.
+ * @version 1.0
+ */
+public interface CacheWriter<K, V> {
+
+    /**
+     * Writes value for key.
+     * @param key Key
+     * @param value Value
+     * @throws Exception if value can't be written
+     */
+    void write(K key, V value) throws Exception;
+
+    /**
+     * Deletes value for key.
+     * @param key Key
+     * @throws Exception if value can't be deleted
+     */
+    void delete(K key) throws Exception;
+
+    /**
+     * Writes values for several keys. By default writes them one by one,
+     * implementations may override it to write them at once.
+     * @param values Keys and values
+     * @throws Exception if values can't be written
+     */
+    default void writeAll(Map<K, V> values) throws Exception {
+        for (Map.Entry<K, V> entry : values.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Deletes values for several keys. By default deletes them one by one.
+     * @param keys Keys
+     * @throws Exception if values can't be deleted
+     */
+    default void deleteAll(Collection<K> keys) throws Exception {
+        for (K key : keys) {
+            delete(key);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ycache;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Passes cache events to {@link CacheEventListener} on executor.
+ * Failures of listener are logged and don't affect cache or other events.
+ * @version 1.0
+ */
+final class EventDispatcher<K,V> {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(EventDispatcher.class);
+
+    private static final int PUT = 0;
+    private static final int EVICT = 1;
+    private static final int REMOVE = 2;
+    private static final int EXPIRE = 3;
+
+    private final CacheEventListener<K,V> listener;
+    private final Executor executor;
+
+    EventDispatcher(CacheEventListener<K,V> listener, Executor executor) {
+        if (listener == null || executor == null) throw new NullPointerException("Listener and executor are required");
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    void put(K key, V value) {
+        dispatch(PUT, key, value);
+    }
+
+    void evict(K key, V value) {
+        dispatch(EVICT, key, value);
+    }
+
+    void remove(K key, V value) {
+        dispatch(REMOVE, key, value);
+    }
+
+    void expire(K key, V value) {
+        dispatch(EXPIRE, key, value);
+    }
+
+    private void dispatch(final int type, final K key, final V value) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        switch (type) {
+                            case PUT: listener.onPut(key, value); break;
+                            case EVICT: listener.onEvict(key, value); break;
+                            case REMOVE: listener.onRemove(key, value); break;
+                            default: listener.onExpire(key, value);
+                        }
+                    } catch (Throwable e) {
+                        LOG.warn("Cache event listener failed", e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Cache event was rejected by executor");
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ycache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache which supports expiration of elements.
+ * Element may expire after given time since it was put (time to live)
+ * and after given time since it was accessed last time (time to idle).
+ * Expired element is never returned, though it may be still counted in size until it is removed.
+ * @version 1.0
+ */
+public interface ExpiringCache<K, V> extends Cache<K, V> {
+
+    /**
+     * Puts element to cache with given expiration.
+     * @param key Key
+     * @param value Value
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     */
+    void put(K key, V value, long timeToLive, long timeToIdle, TimeUnit unit);
+
+    /**
+     * Put element with given expiration to cache only if it doesn't already contain it.
+     * @param key Element key
+     * @param value Element value
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     * @return True if element was put to cache, false if cache already contains it
+     */
+    boolean putIfAbsent(K key, V value, long timeToLive, long timeToIdle, TimeUnit unit);
+
+    /**
+     * Set expiration of elements put without explicit one.
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     */
+    void setDefaultExpiration(long timeToLive, long timeToIdle, TimeUnit unit);
+
+    /**
+     * Removes expired elements.
+     */
+    void cleanUp();
+}
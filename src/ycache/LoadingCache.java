@@ -0,0 +1,38 @@
+package ycache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Cache which loads missing values by {@link CacheLoader}.
+ * Concurrent requests of the same missing key share one load.
+ * @version 1.0
+ */
+public interface LoadingCache<K, V> extends Cache<K, V> {
+
+    /**
+     * Returns element from cache, loading it if it's missing.
+     * @param key Value key
+     * @return Cached or loaded value, null if loader has no value for key
+     * @throws CacheLoadingException if value can't be loaded
+     */
+    @Override
+    V get(K key);
+
+    /**
+     * Returns elements from cache, missing ones are loaded at once.
+     * @param keys Keys
+     * @return Values for keys, keys without value are absent
+     * @throws CacheLoadingException if values can't be loaded
+     */
+    @Override
+    Map<K, V> getAll(Collection<? extends K> keys);
+
+    /**
+     * Returns element from cache, loading it asynchronously if it's missing.
+     * @param key Value key
+     * @return Future of value, completed exceptionally if value can't be loaded
+     */
+    CompletableFuture<V> getAsync(K key);
+}
@@ -0,0 +1,430 @@
+package ycache;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory cache specialized for {@code long} keys.
+ * Keys are not boxed: elements are kept in open-addressing hash tables of
+ * parallel arrays with linear probing, removal shifts following elements back
+ * instead of leaving tombstones. Tables are allocated once and are at most half full,
+ * so {@code get} and {@code put} don't allocate.
+ * <p>
+ * Elements are evicted by CLOCK algorithm over the same table: every slot has
+ * a reference bit which is set on access, the clock hand sweeps slots, clearing
+ * set bits, and evicts the first element whose bit is clear. It approximates LRU
+ * without any per-element bookkeeping objects.
+ * <p>
+ * Operations mirror {@link Cache}. Cache is thread-safe: keys are spread over segments
+ * like in {@link SegmentedCache}, every segment has its own table, clock hand and lock,
+ * so operations on different segments don't wait for each other. Reads take the lock too,
+ * as they set reference bits. Every segment evicts by itself, so a segment may evict
+ * while others still have room.
+ *
+ * @version 1.0
+ */
+public class LongKeyCache<V> {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(LongKeyCache.class);
+
+    private final Segment<V>[] segments;
+
+    /**
+     * Constructor that supports specifying number of segments.
+     *
+     * @param maxSize Max size of cache
+     * @param segmentCount Number of segments, rounded up to power of two
+     */
+    @SuppressWarnings("unchecked")
+    public LongKeyCache(int maxSize, int segmentCount) {
+        if (maxSize <= 0) throw new IllegalArgumentException("Cache size should be positive: " + maxSize);
+        if (maxSize > 1 << 29) throw new IllegalArgumentException("Cache size is too large: " + maxSize);
+        if (segmentCount <= 0) throw new IllegalArgumentException("Number of segments should be positive: " + segmentCount);
+        int count = Integer.highestOneBit(segmentCount);
+        if (count < segmentCount) count <<= 1;
+        if (count > maxSize)
+            throw new IllegalArgumentException(String.format("Cache size %d is too small for %d segments", maxSize, count));
+        // Remainder is spread over the first segments, so total size is exactly maxSize
+        int segmentSize = maxSize / count;
+        int remainder = maxSize % count;
+        this.segments = (Segment<V>[]) new Segment<?>[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<V>(i < remainder ? segmentSize + 1 : segmentSize);
+        }
+        LOG.info(String.format("Long key cache object created (maxSize=%d,segments=%d)", maxSize, count));
+    }
+
+    /**
+     * Constructor with number of segments derived from number of processors, but not more than
+     * a quarter of max size.
+     *
+     * @param maxSize Max size of cache
+     */
+    public LongKeyCache(int maxSize) {
+        this(maxSize, Math.max(1, Integer.highestOneBit(
+                Math.min(Runtime.getRuntime().availableProcessors() * 4, maxSize / 4))));
+    }
+
+    /**
+     * Puts element to cache.
+     *
+     * @param key   Key
+     * @param value Value
+     */
+    public void put(long key, V value) {
+        if (value == null) throw new NullPointerException("Null values are not supported");
+        long h = hash(key);
+        segmentFor(h).put(key, h, value);
+    }
+
+    /**
+     * Returns element from cache.
+     *
+     * @param key Value key
+     * @return Cached value for given key
+     */
+    public V get(long key) {
+        long h = hash(key);
+        return segmentFor(h).get(key, h, true);
+    }
+
+    /**
+     * Removes element from cache.
+     *
+     * @param key Key of value to be removed
+     */
+    public void remove(long key) {
+        long h = hash(key);
+        segmentFor(h).remove(key, h);
+    }
+
+    /**
+     * Clear cache
+     */
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Get current count of cached elements.
+     *
+     * @return Current count of cached elements
+     */
+    public long size() {
+        long size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Get keys from this cache.
+     *
+     * @return Snapshot of keys, every segment is copied under its lock
+     */
+    public long[] keys() {
+        long[][] parts = new long[segments.length][];
+        int n = 0;
+        for (int i = 0; i < segments.length; i++) {
+            parts[i] = segments[i].keys();
+            n += parts[i].length;
+        }
+        long[] res = new long[n];
+        n = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, res, n, part.length);
+            n += part.length;
+        }
+        return res;
+    }
+
+    /**
+     * Get values from this cache.
+     *
+     * @return Snapshot of values, every segment is copied under its lock
+     */
+    public Collection<V> values() {
+        List<V> res = new ArrayList<V>();
+        for (Segment<V> segment : segments) {
+            segment.addValues(res);
+        }
+        return res;
+    }
+
+    /**
+     * Free space by evicting {@code count} elements, taken from segments in turn.
+     *
+     * @param count Number of elements
+     */
+    public void free(int count) {
+        if (count > size()) throw new IllegalStateException(count + " elements can't be evicted");
+        boolean evicted = true;
+        while (count > 0 && evicted) {
+            evicted = false;
+            for (int i = 0; i < segments.length && count > 0; i++) {
+                if (segments[i].evictOne()) {
+                    count--;
+                    evicted = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get element without touching cache access stats.
+     *
+     * @param key Key
+     * @return Cached value for given key
+     */
+    public V getQuiet(long key) {
+        long h = hash(key);
+        return segmentFor(h).get(key, h, false);
+    }
+
+    /**
+     * Check if cache contains element.
+     *
+     * @param key Key
+     * @return true if cache contains element, false otherwise
+     */
+    public boolean contains(long key) {
+        long h = hash(key);
+        return segmentFor(h).contains(key, h);
+    }
+
+    /**
+     * Put element to cache only if it doesn't already contain it.
+     *
+     * @param key   Element key
+     * @param value Element value
+     * @return True if element was put to cache, false if cache already contains it
+     */
+    public boolean putIfAbsent(long key, V value) {
+        if (value == null) throw new NullPointerException("Null values are not supported");
+        long h = hash(key);
+        return segmentFor(h).putIfAbsent(key, h, value);
+    }
+
+    /**
+     * Get snapshot of cache statistics, summed over segments.
+     *
+     * @return Statistics snapshot
+     */
+    public CacheStats stats() {
+        long[] sums = new long[4];
+        for (Segment<V> segment : segments) {
+            segment.addStats(sums);
+        }
+        return new CacheStats(sums[0], sums[1], sums[2], sums[3], 0, 0);
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        // Tables use low bits of hash, segments use high ones
+        return segments[(int) (hash >>> 40) & (segments.length - 1)];
+    }
+
+    private static long hash(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Hash table with CLOCK eviction, guarded by its own lock.
+     */
+    private static final class Segment<V> {
+
+        // Hash table, slot is empty if its value is null
+        private final long[] keys;
+        private final Object[] values;
+        // Reference bits of CLOCK algorithm
+        private final boolean[] referenced;
+        private final int mask;
+
+        // Max size of segment. Segment can't be larger.
+        private final int maxSize;
+        private int size = 0;
+        // Position of clock hand
+        private int hand = 0;
+
+        // Statistics, guarded by the segment lock
+        private long puts = 0;
+        private long misses = 0;
+        private long hits = 0;
+        private long evictions = 0;
+
+        Segment(int maxSize) {
+            int capacity = Integer.highestOneBit(maxSize) << 1;
+            if (capacity < maxSize * 2) capacity <<= 1;
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.referenced = new boolean[capacity];
+            this.mask = capacity - 1;
+            this.maxSize = maxSize;
+        }
+
+        synchronized void put(long key, long hash, V value) {
+            puts++;
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                values[slot] = value;
+                referenced[slot] = true;
+                return;
+            }
+            if (size >= maxSize) evict();
+            insert(key, hash, value);
+        }
+
+        /**
+         * @param touch Whether access is counted and sets reference bit
+         */
+        synchronized V get(long key, long hash, boolean touch) {
+            int slot = find(key, hash);
+            if (!touch) return slot < 0 ? null : valueAt(slot);
+            if (slot < 0) {
+                misses++;
+                return null;
+            }
+            hits++;
+            referenced[slot] = true;
+            return valueAt(slot);
+        }
+
+        synchronized void remove(long key, long hash) {
+            int slot = find(key, hash);
+            if (slot >= 0) delete(slot);
+        }
+
+        synchronized boolean contains(long key, long hash) {
+            return find(key, hash) >= 0;
+        }
+
+        synchronized boolean putIfAbsent(long key, long hash, V value) {
+            if (find(key, hash) >= 0) return false;
+            puts++;
+            if (size >= maxSize) evict();
+            insert(key, hash, value);
+            return true;
+        }
+
+        synchronized void clear() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = null;
+                referenced[i] = false;
+            }
+            size = 0;
+            hand = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long[] keys() {
+            long[] res = new long[size];
+            int n = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) res[n++] = keys[i];
+            }
+            return res;
+        }
+
+        synchronized void addValues(List<V> res) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) res.add(valueAt(i));
+            }
+        }
+
+        synchronized void addStats(long[] sums) {
+            sums[0] += hits;
+            sums[1] += misses;
+            sums[2] += puts;
+            sums[3] += evictions;
+        }
+
+        /**
+         * @return false if segment is empty
+         */
+        synchronized boolean evictOne() {
+            if (size == 0) return false;
+            evict();
+            return true;
+        }
+
+        /**
+         * @return Slot of key or -1 if there is no such key
+         */
+        private int find(long key, long hash) {
+            int i = (int) hash & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) return i;
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Puts element which is not in table to the first empty slot of its probe sequence.
+         */
+        private void insert(long key, long hash, V value) {
+            int i = (int) hash & mask;
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            referenced[i] = false;
+            size++;
+        }
+
+        /**
+         * Moves clock hand to the first element which wasn't referenced since last sweep and evicts it.
+         */
+        private void evict() {
+            while (values[hand] == null || referenced[hand]) {
+                referenced[hand] = false;
+                hand = (hand + 1) & mask;
+            }
+            // Following element may be shifted into this slot, so hand stays to check it
+            delete(hand);
+            evictions++;
+        }
+
+        /**
+         * Empties slot and shifts back following elements of the cluster which probe sequence passes it.
+         */
+        private void delete(int slot) {
+            int empty = slot;
+            int i = slot;
+            while (true) {
+                i = (i + 1) & mask;
+                if (values[i] == null) break;
+                int home = (int) hash(keys[i]) & mask;
+                // Element can be moved to empty slot if that slot is between its home and its current slot
+                if (((i - home) & mask) >= ((i - empty) & mask)) {
+                    keys[empty] = keys[i];
+                    values[empty] = values[i];
+                    referenced[empty] = referenced[i];
+                    empty = i;
+                }
+            }
+            values[empty] = null;
+            referenced[empty] = false;
+            size--;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V valueAt(int slot) {
+            return (V) values[slot];
+        }
+    }
+}
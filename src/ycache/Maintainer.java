@@ -0,0 +1,99 @@
+package ycache;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Background thread which evicts cache elements, so writers don't pay for eviction.
+ * Thread is woken up when cache weight goes above the high watermark and evicts
+ * elements until weight is not above the low watermark.
+ * @version 1.0
+ */
+final class Maintainer {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(Maintainer.class);
+
+    private final SimpleCache<?,?> cache;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Set by writer which wakes thread up, so the others don't take the lock
+    private final AtomicBoolean requested = new AtomicBoolean();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUp = lock.newCondition();
+
+    Maintainer(SimpleCache<?,?> cache, long highWatermark, long lowWatermark, ThreadFactory threadFactory) {
+        this.cache = cache;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.thread = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                maintain();
+            }
+        });
+        if (thread == null) throw new IllegalStateException("Thread factory didn't create maintenance thread");
+        thread.start();
+    }
+
+    /**
+     * Wakes thread up if cache is above the high watermark. Called by writers, doesn't wait.
+     *
+     * @param weight Current weight of cache
+     */
+    void onWrite(long weight) {
+        if (weight <= highWatermark || !requested.compareAndSet(false, true)) return;
+        signal();
+    }
+
+    /**
+     * Stops thread and waits for it to finish current batch.
+     */
+    void stop() {
+        running = false;
+        signal();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            wakeUp.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void maintain() {
+        while (running) {
+            lock.lock();
+            try {
+                while (running && !requested.get()) {
+                    wakeUp.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (!running) return;
+            try {
+                cache.evictTo(lowWatermark);
+            } catch (Throwable e) {
+                LOG.error("Cache maintenance failed", e);
+            }
+            requested.set(false);
+            // Writers which found request set meanwhile didn't wake thread up
+            if (cache.weight() > highWatermark) requested.set(true);
+        }
+    }
+}
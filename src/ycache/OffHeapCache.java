@@ -0,0 +1,353 @@
+package ycache;
+
+import org.apache.log4j.Logger;
+import ycache.eviction.EvictionStrategy;
+import ycache.eviction.LRUEviction;
+import ycache.offheap.SlabAllocator;
+import ycache.serializer.Serializer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Cache which keeps values outside of the heap, so they don't add to GC pauses.
+ * Values are serialized into direct buffers allocated by {@link SlabAllocator},
+ * the heap keeps only an index from key to memory chunk handle.
+ * Cache is bounded both by number of elements and by off-heap memory:
+ * if there is no memory for a new value, elements are evicted until it fits.
+ * <p>
+ * Chunks are read and released under the index lock for the key, so a chunk
+ * is never reused while it is being read.
+ *
+ * @version 1.0
+ */
+public class OffHeapCache<K,V> implements Cache<K,V> {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(OffHeapCache.class);
+
+    // Index from key to chunk handle
+    private final ConcurrentHashMap<K,Long> index;
+    private final SlabAllocator allocator;
+    private final Serializer<V> serializer;
+
+    // Cleaner to free space by eviction
+    private final EvictionStrategy<K> cleaner;
+    // How many elements will be evicted at once on put
+    private static final int CLEAN_STRIDE = 10;
+
+    // Statistics
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Max size of cache. Cache can't be larger.
+    private final long maxSize;
+
+    /**
+     * Constructor that supports specifying eviction strategy.
+     *
+     * @param maxSize Max number of elements
+     * @param maxMemory Max number of off-heap bytes
+     * @param serializer Serializer of values
+     * @param eviction Eviction strategy
+     */
+    public OffHeapCache(int maxSize, long maxMemory, Serializer<V> serializer, EvictionStrategy<K> eviction) {
+        this.index = new ConcurrentHashMap<K, Long>(maxSize);
+        this.allocator = new SlabAllocator(maxMemory);
+        this.serializer = serializer;
+        this.cleaner = eviction;
+        this.maxSize = maxSize;
+        LOG.info(String.format("Off-heap cache object created (maxSize=%d,maxMemory=%d,stratagy=%s)",
+                maxSize, maxMemory, eviction.getClass().getName()));
+    }
+
+    /**
+     * Constructor. Uses LRU algorithm by default.
+     *
+     * @param maxSize Max number of elements
+     * @param maxMemory Max number of off-heap bytes
+     * @param serializer Serializer of values
+     */
+    public OffHeapCache(int maxSize, long maxMemory, Serializer<V> serializer) {
+        this(maxSize, maxMemory, serializer, new LRUEviction<K>(maxSize));
+    }
+
+    /**
+     * Puts element to cache.
+     * Value which doesn't fit into off-heap memory even after eviction is not cached,
+     * and previous value of the key is removed, as it is stale anyway.
+     *
+     * @param key   Key
+     * @param value Value
+     */
+    @Override
+    public void put(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("Null keys and values are not supported");
+        boolean full = !index.containsKey(key) && size() + 1 >= maxSize;
+        if (full && !cleaner.admit(key)) return;
+        if (full) {
+            long size = size() + 1;
+            free((int)(CLEAN_STRIDE < size? CLEAN_STRIDE : size));
+        }
+        final long handle = allocate(serializer.serialize(value));
+        if (handle < 0) {
+            LOG.warn("Element " + key + " doesn't fit into off-heap memory");
+            removeEntry(key);
+            return;
+        }
+        puts.increment();
+        final long[] replaced = {-1};
+        index.compute(key, new BiFunction<K, Long, Long>() {
+            @Override
+            public Long apply(K k, Long old) {
+                cleaner.notifyPut(k);
+                if (old != null) replaced[0] = old;
+                return handle;
+            }
+        });
+        if (replaced[0] >= 0) allocator.free(replaced[0]);
+    }
+
+    /**
+     * Returns element from cache.
+     *
+     * @param key Value key
+     * @return Cached value for given key
+     */
+    @Override
+    public V get(K key) {
+        byte[] data = read(key);
+        if (data == null) {
+            misses.increment();
+            cleaner.notifyMiss(key);
+            return null;
+        }
+        hits.increment();
+        cleaner.notifyGet(key);
+        return serializer.deserialize(data);
+    }
+
+    /**
+     * Removes element from cache.
+     *
+     * @param key Key of value to be removed
+     */
+    @Override
+    public void remove(K key) {
+        removeEntry(key);
+    }
+
+    /**
+     * Clear cache
+     */
+    @Override
+    public void clear() {
+        for (K key : index.keySet()) {
+            removeEntry(key);
+        }
+        cleaner.notifyClear();
+    }
+
+    /**
+     * Get current count of cached elements.
+     *
+     * @return Current count of cached elements
+     */
+    @Override
+    public long size() {
+        return index.mappingCount();
+    }
+
+    /**
+     * Get set of keys from this cache.
+     *
+     * @return Keys as a set
+     */
+    @Override
+    public Set<K> keys() {
+        return index.keySet();
+    }
+
+    /**
+     * Get set of values from this cache.
+     * Values are deserialized, so this is expensive.
+     *
+     * @return Snapshot of values
+     */
+    @Override
+    public Collection<V> values() {
+        List<V> values = new ArrayList<V>();
+        for (K key : index.keySet()) {
+            byte[] data = read(key);
+            if (data != null) values.add(serializer.deserialize(data));
+        }
+        return values;
+    }
+
+    /**
+     * Free space by evicting {@code count} elements.
+     *
+     * @param count Number of elements
+     */
+    @Override
+    public void free(int count) {
+        evict(count);
+    }
+
+    /**
+     * Get element without touching cache access stats.
+     *
+     * @param key Key
+     * @return Cached value for given key
+     */
+    @Override
+    public V getQuiet(K key) {
+        byte[] data = read(key);
+        return data == null ? null : serializer.deserialize(data);
+    }
+
+    /**
+     * Check if cache contains element.
+     *
+     * @param key Key
+     * @return true if cache contains element, false otherwise
+     */
+    @Override
+    public boolean contains(K key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Put element to cache only if it doesn't already contain it.
+     *
+     * @param key   Element key
+     * @param value Element value
+     * @return True if element was put to cache, false if cache already contains it
+     */
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("Null keys and values are not supported");
+        if (index.containsKey(key)) return false;
+        final long handle = allocate(serializer.serialize(value));
+        if (handle < 0) return false;
+        final boolean[] added = new boolean[1];
+        index.computeIfAbsent(key, new Function<K, Long>() {
+            @Override
+            public Long apply(K k) {
+                cleaner.notifyPut(k);
+                added[0] = true;
+                return handle;
+            }
+        });
+        if (!added[0]) {
+            allocator.free(handle);
+            return false;
+        }
+        puts.increment();
+        return true;
+    }
+
+    /**
+     * @return Number of off-heap bytes used by cached values
+     */
+    public long getOffHeapBytes() {
+        return allocator.getUsedBytes();
+    }
+
+    /**
+     * @return Number of off-heap bytes reserved by cache
+     */
+    public long getReservedOffHeapBytes() {
+        return allocator.getReservedBytes();
+    }
+
+    /**
+     * Get snapshot of cache statistics.
+     *
+     * @return Statistics snapshot
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), puts.sum(), evictions.sum(), 0, 0);
+    }
+
+    /**
+     * Allocates chunk and writes data to it, evicting elements while there is no memory.
+     * Evicted chunks of other size classes help too: once a slab is empty, it is
+     * reassigned to the size class of data.
+     *
+     * @return Chunk handle or -1 if data doesn't fit even into empty cache
+     */
+    private long allocate(byte[] data) {
+        if (data.length > allocator.getMaxLength()) return -1;
+        long handle = allocator.allocate(data.length);
+        while (handle < 0 && size() > 0) {
+            if (!evict((int) Math.min(CLEAN_STRIDE, size()))) break;
+            handle = allocator.allocate(data.length);
+        }
+        if (handle >= 0) allocator.write(handle, data);
+        return handle;
+    }
+
+    /**
+     * Evicts elements chosen by eviction strategy.
+     *
+     * @return false if strategy had not enough elements, as other threads have evicted them meanwhile
+     */
+    private boolean evict(int count) {
+        Collection<K> victims;
+        try {
+            victims = cleaner.nextVictims(count);
+        } catch (IllegalStateException e) {
+            return false;
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Elements " + victims + " will be killed");
+        for (K key : victims) {
+            if (removeEntry(key))
+                evictions.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Copies value bytes under the index lock for the key, so chunk is not freed meanwhile.
+     */
+    private byte[] read(K key) {
+        final byte[][] data = new byte[1][];
+        index.computeIfPresent(key, new BiFunction<K, Long, Long>() {
+            @Override
+            public Long apply(K k, Long handle) {
+                data[0] = allocator.read(handle);
+                return handle;
+            }
+        });
+        return data[0];
+    }
+
+    /**
+     * Removes element, notifies eviction strategy and releases its chunk.
+     *
+     * @return true if element was removed
+     */
+    private boolean removeEntry(K key) {
+        final boolean[] removed = new boolean[1];
+        index.computeIfPresent(key, new BiFunction<K, Long, Long>() {
+            @Override
+            public Long apply(K k, Long handle) {
+                cleaner.notifyRemove(k);
+                allocator.free(handle);
+                removed[0] = true;
+                return null;
+            }
+        });
+        return removed[0];
+    }
+}
@@ -0,0 +1,380 @@
+package ycache;
+
+import org.apache.log4j.Logger;
+import ycache.eviction.EvictionStrategy;
+import ycache.eviction.EvictionStrategyFactory;
+import ycache.eviction.LRUEviction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory cache partitioned by key hash into independent segments.
+ * Every segment is a {@link SimpleCache} with its own map, eviction strategy
+ * and size budget, so eviction and bookkeeping of different keys don't contend.
+ * Eviction is per segment: cache may evict element while other segments have room.
+ *
+ * @version 1.0
+ */
+public class SegmentedCache<K,V> implements ExpiringCache<K,V> {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(SegmentedCache.class);
+
+    private final SimpleCache<K,V>[] segments;
+
+    /**
+     * Constructor that supports specifying eviction strategy.
+     *
+     * @param maxSize Max size of cache
+     * @param segmentCount Number of segments, rounded up to power of two
+     * @param eviction Factory of eviction strategy for each segment
+     * @throws IllegalArgumentException if several segments would hold less than 2 elements each
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedCache(int maxSize, int segmentCount, EvictionStrategyFactory<K> eviction) {
+        if (segmentCount <= 0) throw new IllegalArgumentException("Number of segments should be positive: " + segmentCount);
+        int count = Integer.highestOneBit(segmentCount);
+        if (count < segmentCount) count <<= 1;
+        int segmentSize = maxSize / count;
+        if (count > 1 && segmentSize < 2)
+            throw new IllegalArgumentException(String.format("Cache size %d is too small for %d segments", maxSize, count));
+        // Remainder is spread over the first segments, so total size is exactly maxSize
+        int remainder = maxSize % count;
+        this.segments = (SimpleCache<K,V>[]) new SimpleCache<?,?>[count];
+        for (int i = 0; i < count; i++) {
+            int size = i < remainder ? segmentSize + 1 : segmentSize;
+            segments[i] = new SimpleCache<K, V>(size, eviction.create(size));
+        }
+        LOG.info(String.format("Segmented cache object created (maxSize=%d,segments=%d)", maxSize, count));
+    }
+
+    /**
+     * Constructor with number of segments derived from number of processors, but not more than
+     * small cache can hold. Uses LRU algorithm.
+     *
+     * @param maxSize Max size of cache
+     */
+    public SegmentedCache(int maxSize) {
+        this(maxSize, defaultSegmentCount(maxSize), new EvictionStrategyFactory<K>() {
+            @Override
+            public EvictionStrategy<K> create(int cacheSize) {
+                return new LRUEviction<K>(cacheSize);
+            }
+        });
+    }
+
+    /**
+     * @return Four segments per processor, at most half of max size, power of two,
+     * single segment for caches smaller than four elements
+     */
+    private static int defaultSegmentCount(int maxSize) {
+        int count = Math.min(Runtime.getRuntime().availableProcessors() * 4, maxSize / 2);
+        return Math.max(1, Integer.highestOneBit(count));
+    }
+
+    /**
+     * Puts element to cache.
+     *
+     * @param key   Key
+     * @param value Value
+     */
+    @Override
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    /**
+     * Returns element from cache.
+     *
+     * @param key Value key
+     * @return Cached value for given key
+     */
+    @Override
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * Removes element from cache.
+     *
+     * @param key Key of value to be removed
+     */
+    @Override
+    public void remove(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * Clear cache
+     */
+    @Override
+    public void clear() {
+        for (SimpleCache<K,V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Get current count of cached elements.
+     *
+     * @return Current count of cached elements
+     */
+    @Override
+    public long size() {
+        long size = 0;
+        for (SimpleCache<K,V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Get set of keys from this cache.
+     *
+     * @return Snapshot of keys as a set
+     */
+    @Override
+    public Set<K> keys() {
+        Set<K> keys = new HashSet<K>();
+        for (SimpleCache<K,V> segment : segments) {
+            keys.addAll(segment.keys());
+        }
+        return keys;
+    }
+
+    /**
+     * Get set of values from this cache.
+     *
+     * @return Snapshot of values
+     */
+    @Override
+    public Collection<V> values() {
+        List<V> values = new ArrayList<V>();
+        for (SimpleCache<K,V> segment : segments) {
+            values.addAll(segment.values());
+        }
+        return values;
+    }
+
+    /**
+     * Free space by evicting {@code count} elements.
+     * Elements are evicted from all segments evenly.
+     *
+     * @param count Number of elements
+     */
+    @Override
+    public void free(int count) {
+        int left = count;
+        for (int i = 0; i < segments.length && left > 0; i++) {
+            SimpleCache<K,V> segment = segments[i];
+            int share = (left + segments.length - i - 1) / (segments.length - i);
+            int n = (int) Math.min(share, segment.size());
+            if (n > 0) {
+                segment.free(n);
+                left -= n;
+            }
+        }
+    }
+
+    /**
+     * Get element without touching cache access stats.
+     *
+     * @param key Key
+     * @return Cached value for given key
+     */
+    @Override
+    public V getQuiet(K key) {
+        return segmentFor(key).getQuiet(key);
+    }
+
+    /**
+     * Check if cache contains element.
+     *
+     * @param key Key
+     * @return true if cache contains element, false otherwise
+     */
+    @Override
+    public boolean contains(K key) {
+        return segmentFor(key).contains(key);
+    }
+
+    /**
+     * Put element to cache only if it doesn't already contain it.
+     *
+     * @param key   Element key
+     * @param value Element value
+     * @return True if element was put to cache, false if cache already contains it
+     */
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        return segmentFor(key).putIfAbsent(key, value);
+    }
+
+    /**
+     * Returns elements from cache. Keys are split by segment, so every segment processes one batch.
+     *
+     * @param keys Value keys
+     * @return Cached values for keys, keys without value are absent
+     */
+    @Override
+    public Map<K,V> getAll(Collection<? extends K> keys) {
+        List<K>[] batches = split(keys);
+        Map<K,V> res = new HashMap<K, V>();
+        for (int i = 0; i < segments.length; i++) {
+            if (batches[i] != null) res.putAll(segments[i].getAll(batches[i]));
+        }
+        return res;
+    }
+
+    /**
+     * Puts elements to cache. Elements are split by segment, so every segment processes one batch.
+     *
+     * @param elements Keys and values
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void putAll(Map<? extends K, ? extends V> elements) {
+        Map<K,V>[] batches = (Map<K,V>[]) new Map<?,?>[segments.length];
+        for (Map.Entry<? extends K, ? extends V> entry : elements.entrySet()) {
+            int i = indexFor(entry.getKey());
+            if (batches[i] == null) batches[i] = new HashMap<K, V>();
+            batches[i].put(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < segments.length; i++) {
+            if (batches[i] != null) segments[i].putAll(batches[i]);
+        }
+    }
+
+    /**
+     * Removes elements from cache. Keys are split by segment, so every segment processes one batch.
+     *
+     * @param keys Keys of values to be removed
+     */
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        List<K>[] batches = split(keys);
+        for (int i = 0; i < segments.length; i++) {
+            if (batches[i] != null) segments[i].removeAll(batches[i]);
+        }
+    }
+
+    /**
+     * Puts element to cache with given expiration.
+     *
+     * @param key Key
+     * @param value Value
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     */
+    @Override
+    public void put(K key, V value, long timeToLive, long timeToIdle, TimeUnit unit) {
+        segmentFor(key).put(key, value, timeToLive, timeToIdle, unit);
+    }
+
+    /**
+     * Put element with given expiration to cache only if it doesn't already contain it.
+     *
+     * @param key Element key
+     * @param value Element value
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     * @return True if element was put to cache, false if cache already contains it
+     */
+    @Override
+    public boolean putIfAbsent(K key, V value, long timeToLive, long timeToIdle, TimeUnit unit) {
+        return segmentFor(key).putIfAbsent(key, value, timeToLive, timeToIdle, unit);
+    }
+
+    /**
+     * Set expiration of elements put without explicit one.
+     *
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     */
+    @Override
+    public void setDefaultExpiration(long timeToLive, long timeToIdle, TimeUnit unit) {
+        for (SimpleCache<K,V> segment : segments) {
+            segment.setDefaultExpiration(timeToLive, timeToIdle, unit);
+        }
+    }
+
+    /**
+     * Removes expired elements.
+     */
+    @Override
+    public void cleanUp() {
+        for (SimpleCache<K,V> segment : segments) {
+            segment.cleanUp();
+        }
+    }
+
+    /**
+     * Set listener of puts, evictions, removals and expirations in all segments.
+     *
+     * @param listener Listener or null to stop listening
+     * @param executor Executor of listener calls
+     */
+    public void setEventListener(CacheEventListener<K,V> listener, Executor executor) {
+        for (SimpleCache<K,V> segment : segments) {
+            segment.setEventListener(listener, executor);
+        }
+    }
+
+    /**
+     * Get snapshot of cache statistics, summed over all segments.
+     *
+     * @return Statistics snapshot
+     */
+    public CacheStats stats() {
+        long hits = 0, misses = 0, puts = 0, evictions = 0, loads = 0, loadTime = 0;
+        for (SimpleCache<K,V> segment : segments) {
+            CacheStats stats = segment.stats();
+            hits += stats.getHitCount();
+            misses += stats.getMissCount();
+            puts += stats.getPutCount();
+            evictions += stats.getEvictionCount();
+            loads += stats.getLoadCount();
+            loadTime += stats.getTotalLoadTime();
+        }
+        return new CacheStats(hits, misses, puts, evictions, loads, loadTime);
+    }
+
+    private SimpleCache<K,V> segmentFor(K key) {
+        return segments[indexFor(key)];
+    }
+
+    private int indexFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & (segments.length - 1);
+    }
+
+    /**
+     * Splits keys by segment.
+     *
+     * @return Keys of every segment, null for segments without keys
+     */
+    @SuppressWarnings("unchecked")
+    private List<K>[] split(Collection<? extends K> keys) {
+        List<K>[] batches = (List<K>[]) new List<?>[segments.length];
+        for (K key : keys) {
+            int i = indexFor(key);
+            if (batches[i] == null) batches[i] = new ArrayList<K>();
+            batches[i].add(key);
+        }
+        return batches;
+    }
+}
@@ -3,46 +3,99 @@ package ycache;
 import org.apache.log4j.Logger;
 import ycache.eviction.EvictionStrategy;
 import ycache.eviction.LRUEviction;
+import ycache.expiry.TimerWheel;
+import ycache.metrics.CacheMetrics;
+import ycache.serializer.Serializer;
+import ycache.snapshot.SnapshotReader;
+import ycache.snapshot.SnapshotWriter;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Basic in-memory heap-based cache implementation.
  * It is non-persistant, thread-safe.
+ * Cache is bounded either by count of elements or by their total weight (see {@link Weigher}).
+ * When new element doesn't fit, eviction strategy is asked for victims until it fits.
+ * Elements may expire, expired elements are removed on access and in batches by {@link #cleanUp()},
+ * which is also run by puts about once a second.
+ * Cache may be saved to a snapshot file and restored from it after restart.
+ * Latencies of operations and eviction passes are measured only after {@link #enableMetrics(String)}.
  *
  * @author Roman Voropaev
  * @version 1.0
  */
-public class SimpleCache<K,V> implements Cache<K,V>{
+public class SimpleCache<K,V> implements ExpiringCache<K,V> {
 
     // Logging
     private final Logger LOG = Logger.getLogger(SimpleCache.class);
 
     // Map contains cache data.
-    private final ConcurrentMap<K,V> map;
+    private final ConcurrentHashMap<K,V> map;
 
     // Cleaner to free space by eviction
     private final EvictionStrategy<K> cleaner;
-    // How many elements will be evicted at once on put
-    private static final int CLEAN_STRIDE = 10;
 
-    // Current cache size
-    private long size = 0;
+    // Statistics, striped to avoid contention between threads.
     // Number of puts to cache
-    private long puts = 0;
-    // Number of gets from cache
-    private long gets = 0;
+    private final LongAdder puts = new LongAdder();
     // Cache misses
-    private long misses = 0;
+    private final LongAdder misses = new LongAdder();
     // Cache hits
-    private long hits;
+    private final LongAdder hits = new LongAdder();
+    // Evicted elements
+    private final LongAdder evictions = new LongAdder();
+    // Loaded values and time spent loading them
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadTime = new LongAdder();
 
-    // Max size of cache. Cache can't be larger.
-    private long maxSize;
+    // Weight of every element, every element weighs 1 if cache is bounded by size
+    private final Weigher<K,V> weigher;
+    // Max total weight of cache. Cache can't be heavier.
+    private final long maxWeight;
+    // Current total weight
+    private final AtomicLong weight = new AtomicLong();
+
+    // Expiration time of elements
+    private final TimerWheel<K> wheel = new TimerWheel<K>();
+    // Time is measured since creation, so it is never negative
+    private final long startNanos = System.nanoTime();
+    // Set once any element expires, so gets don't check expiration until then
+    private volatile boolean expiring = false;
+    // Expiration of elements put without explicit one, nanoseconds
+    private volatile long defaultTimeToLive = 0;
+    private volatile long defaultTimeToIdle = 0;
+    // Time of next clean up run by puts
+    private volatile long nextCleanUp = 0;
+    // Interval of clean up run by puts
+    private static final long CLEAN_UP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    // Listener of changes, null if nobody listens
+    private volatile EventDispatcher<K,V> events;
+
+    // Background eviction, null if writers evict inline
+    private volatile Maintainer maintainer;
+    // Max number of elements evicted by maintenance thread at once
+    private static final int MAINTENANCE_BATCH = 256;
+
+    // Latency histograms, null if they are disabled, so operations aren't timed
+    private volatile CacheMetrics metrics;
 
     /**
      * Constructor that supports specifying eviction strategy.
@@ -51,11 +104,27 @@ public class SimpleCache<K,V> implements Cache<K,V>{
      * @param eviction Eviction strategy
      */
     public SimpleCache(int maxSize, EvictionStrategy<K> eviction) {
-        this.map = new ConcurrentHashMap<K, V>(maxSize);
+        this(maxSize, maxSize, new SingletonWeigher<K, V>(), eviction);
+    }
+
+    /**
+     * Constructor of cache bounded by total weight of elements instead of their count.
+     *
+     * @param maxWeight Max total weight of cache
+     * @param weigher Weigher of elements
+     * @param eviction Eviction strategy
+     */
+    public SimpleCache(long maxWeight, Weigher<K,V> weigher, EvictionStrategy<K> eviction) {
+        this(16, maxWeight, weigher, eviction);
+    }
+
+    private SimpleCache(int initialCapacity, long maxWeight, Weigher<K,V> weigher, EvictionStrategy<K> eviction) {
+        this.map = new ConcurrentHashMap<K, V>(initialCapacity);
         this.cleaner = eviction;
-        this.maxSize = maxSize;
-        LOG.info(String.format("Cache object created (maxSize=%d,stratagy=%s)",
-                maxSize, eviction.getClass().getName() ));
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+        LOG.info(String.format("Cache object created (maxWeight=%d,stratagy=%s)",
+                maxWeight, eviction.getClass().getName() ));
     }
 
     /**
@@ -69,22 +138,82 @@ public class SimpleCache<K,V> implements Cache<K,V>{
 
     /**
      * Puts element to cache.
+     * If cache is full, eviction strategy may reject new element (see {@link EvictionStrategy#admit(Object)}).
      *
      * @param key   Key
      * @param value Value
      */
     @Override
     public void put(K key, V value) {
-        cleaner.notifyPut(key);
-        puts++;
-        size++;
-        if (size >= maxSize) {
+        put(key, value, defaultTimeToLive, defaultTimeToIdle, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Puts element to cache with given expiration.
+     * If cache is full, eviction strategy may reject new element (see {@link EvictionStrategy#admit(Object)}).
+     *
+     * @param key Key
+     * @param value Value
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     */
+    @Override
+    public void put(K key, V value, long timeToLive, long timeToIdle, TimeUnit unit) {
+        CacheMetrics metrics = this.metrics;
+        if (metrics == null) {
+            putElement(key, value, timeToLive, timeToIdle, unit);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            putElement(key, value, timeToLive, timeToIdle, unit);
+        } finally {
+            metrics.record(CacheMetrics.Operation.PUT, System.nanoTime() - start);
+        }
+    }
+
+    private void putElement(K key, final V value, long timeToLive, long timeToIdle, TimeUnit unit) {
+        if (key == null || value == null) throw new NullPointerException("Null keys and values are not supported");
+        final int w = weigh(key, value);
+        if (w > maxWeight) {
+            // Never fits, old value is stale anyway
+            removed(key, removeEntry(key));
+            return;
+        }
+        // Cache is full, so new element forces eviction and has to be admitted
+        boolean full = weight.get() + w > maxWeight;
+        if (full && !map.containsKey(key) && !cleaner.admit(key)) {
+            if (LOG.isDebugEnabled())
+                LOG.debug(String.format("Element (%s:%s) was rejected by cache", key, value));
+            return;
+        }
+        puts.increment();
+        if (full) {
             // Should be cleaned
-            free((int)(CLEAN_STRIDE < size? CLEAN_STRIDE : size));
+            evict(w);
+        }
+        final long ttl = unit.toNanos(timeToLive);
+        final long tti = unit.toNanos(timeToIdle);
+        // Strategy is notified under the map's lock for this key, so they stay consistent
+        map.compute(key, new BiFunction<K, V, V>() {
+            @Override
+            public V apply(K k, V old) {
+                cleaner.notifyPut(k);
+                scheduleExpiration(k, ttl, tti);
+                onWrite(k, value);
+                weight.addAndGet(old == null ? w : w - weigh(k, old));
+                return value;
+            }
+        });
+        EventDispatcher<K,V> events = this.events;
+        if (events != null) events.put(key, value);
+        if (LOG.isDebugEnabled())
+            LOG.debug(String.format("Element (%s:%s) was inserted to cache", key, value));
+        maintain();
+        if (expiring && now() >= nextCleanUp) {
+            cleanUp();
         }
-        map.put(key, value);
-        if (key!=null && value != null)
-            LOG.debug(String.format("Element (%s:%s) was inserted to cache", key.toString(), value.toString()));
     }
 
     /**
@@ -95,16 +224,19 @@ public class SimpleCache<K,V> implements Cache<K,V>{
      */
     @Override
     public V get(K key) {
-        gets++;
-        if (!map.containsKey(key))
-            misses++;
-        else {
-            hits++;
+        CacheMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        V value = access(key, map.get(key));
+        if (value == null) {
+            misses.increment();
+            cleaner.notifyMiss(key);
+        } else {
+            hits.increment();
             cleaner.notifyGet(key);
         }
-        V value = map.get(key);
-        if (key!=null && value != null)
-            LOG.debug(String.format("Element (%s:%s) was accessed in cache", key.toString(), value.toString()));
+        if (value != null && LOG.isDebugEnabled())
+            LOG.debug(String.format("Element (%s:%s) was accessed in cache", key, value));
+        if (metrics != null) metrics.record(CacheMetrics.Operation.GET, System.nanoTime() - start);
         return value;
     }
 
@@ -115,11 +247,24 @@ public class SimpleCache<K,V> implements Cache<K,V>{
      */
     @Override
     public void remove(K key) {
-        cleaner.notifyRemove(key);
-        V value = map.remove(key);
-        size--;
-        if (key!=null && value != null)
-            LOG.debug(String.format("Element (%s:%s) was removed from cache", key.toString(), value.toString()));
+        CacheMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        removed(key, removeEntry(key));
+        if (metrics != null) metrics.record(CacheMetrics.Operation.REMOVE, System.nanoTime() - start);
+    }
+
+    /**
+     * Removes element only if it's still mapped to given value (compared by identity).
+     *
+     * @param key Key of element
+     * @param value Expected value
+     * @return true if element was removed
+     */
+    public boolean remove(K key, V value) {
+        if (value == null) throw new NullPointerException("Null values are not supported");
+        V removed = removeEntry(key, value, false);
+        removed(key, removed);
+        return removed != null;
     }
 
     /**
@@ -127,9 +272,12 @@ public class SimpleCache<K,V> implements Cache<K,V>{
      */
     @Override
     public void clear() {
+        EventDispatcher<K,V> events = this.events;
+        for (K key : map.keySet()) {
+            V value = removeEntry(key);
+            if (value != null && events != null) events.remove(key, value);
+        }
         cleaner.notifyClear();
-        map.clear();
-        size = 0;
         LOG.debug("Cache was closed");
     }
 
@@ -140,7 +288,17 @@ public class SimpleCache<K,V> implements Cache<K,V>{
      */
     @Override
     public long size() {
-        return size;
+        return map.mappingCount();
+    }
+
+    /**
+     * Get current total weight of cached elements.
+     * It equals to size if cache is bounded by size.
+     *
+     * @return Total weight
+     */
+    public long weight() {
+        return weight.get();
     }
 
     /**
@@ -170,13 +328,295 @@ public class SimpleCache<K,V> implements Cache<K,V>{
      */
     @Override
     public void free(int count) {
+        CacheMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
         Collection<K> victims = cleaner.nextVictims(count);
-        LOG.debug("Elements " + victims + " will be killed");
+        if (LOG.isDebugEnabled())
+            LOG.debug("Elements " + victims + " will be killed");
+        int evicted = 0;
         for (K key : victims) {
-            remove(key);
+            if (evicted(key, removeEntry(key, true))) evicted++;
+        }
+        if (metrics != null) {
+            long nanos = System.nanoTime() - start;
+            metrics.record(CacheMetrics.Operation.FREE, nanos);
+            metrics.recordEviction(nanos, evicted);
         }
     }
 
+    /**
+     * Evicts elements one by one, until element of given weight fits into cache.
+     *
+     * @param incoming Weight of new element
+     */
+    private void evict(long incoming) {
+        CacheMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        int evicted = 0;
+        while (weight.get() + incoming > maxWeight && size() > 0) {
+            Collection<K> victims;
+            try {
+                victims = cleaner.nextVictims(1);
+            } catch (IllegalStateException e) {
+                // Other threads have evicted everything meanwhile
+                break;
+            }
+            for (K key : victims) {
+                if (evicted(key, removeEntry(key, true))) evicted++;
+                else forget(key);
+            }
+        }
+        if (metrics != null && evicted > 0) metrics.recordEviction(System.nanoTime() - start, evicted);
+    }
+
+    /**
+     * Evicts overflow of cache after a batch of elements is put: victims are chosen at once,
+     * by average weight of elements, and the rest, if any, is evicted one by one.
+     */
+    private void evictOverflow() {
+        long excess = weight.get() - maxWeight;
+        if (excess <= 0) return;
+        CacheMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        long size = size();
+        long count = Math.max(1, excess * size / Math.max(1, weight.get()));
+        int evicted = 0;
+        try {
+            for (K key : cleaner.nextVictims((int) Math.min(count, size))) {
+                if (weight.get() <= maxWeight) break;
+                if (evicted(key, removeEntry(key, true))) evicted++;
+                else forget(key);
+            }
+        } catch (IllegalStateException e) {
+            // Other threads have evicted everything meanwhile
+        }
+        if (metrics != null && evicted > 0) metrics.recordEviction(System.nanoTime() - start, evicted);
+        evict(0);
+    }
+
+    /**
+     * Evicts elements in batches until weight of cache is not above target.
+     * Batch is sized by average weight of elements, and eviction stops at target
+     * in the middle of a batch. Called by maintenance thread.
+     *
+     * @param target Weight of cache after eviction
+     */
+    void evictTo(long target) {
+        CacheMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        int evicted = 0;
+        long excess;
+        while ((excess = weight.get() - target) > 0 && size() > 0) {
+            long size = size();
+            // Number of average elements which weigh the excess
+            long count = Math.max(1, excess * size / Math.max(1, weight.get()));
+            Collection<K> victims;
+            try {
+                victims = cleaner.nextVictims((int) Math.min(Math.min(count, MAINTENANCE_BATCH), size));
+            } catch (IllegalStateException e) {
+                // Other threads have evicted everything meanwhile
+                break;
+            }
+            for (K key : victims) {
+                if (weight.get() <= target) break;
+                if (evicted(key, removeEntry(key, true))) evicted++;
+                else forget(key);
+            }
+        }
+        if (metrics != null && evicted > 0) metrics.recordEviction(System.nanoTime() - start, evicted);
+    }
+
+    /**
+     * Wakes maintenance thread up if it is running and cache is above the high watermark.
+     */
+    private void maintain() {
+        Maintainer maintainer = this.maintainer;
+        if (maintainer != null) maintainer.onWrite(weight.get());
+    }
+
+    /**
+     * Removes element if it has expired.
+     *
+     * @param key Key of element
+     */
+    private void expire(K key) {
+        final Object[] removed = new Object[1];
+        map.computeIfPresent(key, new BiFunction<K, V, V>() {
+            @Override
+            public V apply(K k, V v) {
+                // Element may have been put again or accessed meanwhile
+                if (!wheel.isExpired(k, now())) {
+                    wheel.reschedule(k);
+                    return v;
+                }
+                cleaner.notifyRemove(k);
+                onRemoval(k);
+                wheel.cancel(k);
+                weight.addAndGet(-weigh(k, v));
+                onEviction(k, v);
+                removed[0] = v;
+                return null;
+            }
+        });
+        if (removed[0] != null) {
+            evictions.increment();
+            EventDispatcher<K,V> events = this.events;
+            @SuppressWarnings("unchecked")
+            V value = (V) removed[0];
+            if (events != null) events.expire(key, value);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Element " + key + " has expired");
+        }
+    }
+
+    /**
+     * Called under the map's lock for the key.
+     */
+    private void scheduleExpiration(K key, long timeToLive, long timeToIdle) {
+        if (timeToLive > 0 || timeToIdle > 0) {
+            expiring = true;
+            wheel.schedule(key, timeToLive, timeToIdle, now());
+        } else if (expiring) {
+            wheel.cancel(key);
+        }
+    }
+
+    /**
+     * Counts evicted element and notifies listener about it.
+     *
+     * @return true if element was evicted, false if it was not cached
+     */
+    private boolean evicted(K key, V value) {
+        if (value == null) return false;
+        evictions.increment();
+        EventDispatcher<K,V> events = this.events;
+        if (events != null) events.evict(key, value);
+        return true;
+    }
+
+    /**
+     * Notifies listener about removed element.
+     */
+    private void removed(K key, V value) {
+        if (value == null) return;
+        EventDispatcher<K,V> events = this.events;
+        if (events != null) events.remove(key, value);
+        if (LOG.isDebugEnabled())
+            LOG.debug(String.format("Element (%s:%s) was removed from cache", key, value));
+    }
+
+    /**
+     * Checks expiration of element found in map and records its access.
+     *
+     * @return Value or null if it has expired
+     */
+    private V access(K key, V value) {
+        if (value != null && expiring) {
+            long now = now();
+            if (wheel.isExpired(key, now)) {
+                expire(key);
+                return null;
+            }
+            wheel.touch(key, now);
+        }
+        return value;
+    }
+
+    /**
+     * Removes key which is not cached from eviction strategy, under the map's lock for this key.
+     */
+    private void forget(K key) {
+        map.compute(key, new BiFunction<K, V, V>() {
+            @Override
+            public V apply(K k, V v) {
+                if (v == null) cleaner.notifyRemove(k);
+                return v;
+            }
+        });
+    }
+
+    /**
+     * Adds key which is cached to eviction strategy, under the map's lock for this key.
+     */
+    private void track(K key) {
+        map.computeIfPresent(key, new BiFunction<K, V, V>() {
+            @Override
+            public V apply(K k, V v) {
+                cleaner.notifyPut(k);
+                return v;
+            }
+        });
+    }
+
+    /**
+     * Moves element to the position of a new one in eviction strategy, unless it was put again meanwhile.
+     */
+    private void requeue(K key, final V value) {
+        map.computeIfPresent(key, new BiFunction<K, V, V>() {
+            @Override
+            public V apply(K k, V v) {
+                if (v == value) {
+                    cleaner.notifyRemove(k);
+                    cleaner.notifyPut(k);
+                }
+                return v;
+            }
+        });
+    }
+
+    private long now() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Removes element from map and notifies eviction strategy under the map's lock for this key.
+     *
+     * @param key Key of element
+     * @return Removed value or null if there was no such element
+     */
+    private V removeEntry(K key) {
+        return removeEntry(key, false);
+    }
+
+    /**
+     * Removes element from map and notifies eviction strategy under the map's lock for this key.
+     *
+     * @param key Key of element
+     * @param evicting true if element is evicted
+     * @return Removed value or null if there was no such element
+     */
+    private V removeEntry(K key, boolean evicting) {
+        return removeEntry(key, null, evicting);
+    }
+
+    /**
+     * Removes element from map and notifies eviction strategy under the map's lock for this key.
+     *
+     * @param key Key of element
+     * @param expected Value which should be removed, null for any
+     * @param evicting true if element is evicted
+     * @return Removed value or null if there was no such element
+     */
+    private V removeEntry(K key, final V expected, final boolean evicting) {
+        final Object[] removed = new Object[1];
+        map.computeIfPresent(key, new BiFunction<K, V, V>() {
+            @Override
+            public V apply(K k, V v) {
+                if (expected != null && v != expected) return v;
+                cleaner.notifyRemove(k);
+                onRemoval(k);
+                if (expiring) wheel.cancel(k);
+                weight.addAndGet(-weigh(k, v));
+                if (evicting) onEviction(k, v);
+                removed[0] = v;
+                return null;
+            }
+        });
+        @SuppressWarnings("unchecked")
+        V value = (V) removed[0];
+        return value;
+    }
+
     /**
      * Get element without touching cache access stats.
      *
@@ -185,7 +625,9 @@ public class SimpleCache<K,V> implements Cache<K,V>{
      */
     @Override
     public V getQuiet(K key) {
-        return map.get(key);
+        V value = map.get(key);
+        if (value != null && expiring && wheel.isExpired(key, now())) return null;
+        return value;
     }
 
     /**
@@ -196,7 +638,8 @@ public class SimpleCache<K,V> implements Cache<K,V>{
      */
     @Override
     public boolean contains(K key) {
-        return map.containsKey(key);
+        if (!map.containsKey(key)) return false;
+        return !expiring || !wheel.isExpired(key, now());
     }
 
     /**
@@ -208,27 +651,522 @@ public class SimpleCache<K,V> implements Cache<K,V>{
      */
     @Override
     public boolean putIfAbsent(K key, V value) {
-        if (map.putIfAbsent(key,value) != null) return false;
-        cleaner.notifyPut(key);
-        puts++;
-        size++;
-        LOG.debug(String.format("Element (%s:%s) was inserted to cache", key.toString(), value.toString()));
+        return putIfAbsent(key, value, defaultTimeToLive, defaultTimeToIdle, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Put element with given expiration to cache only if it doesn't already contain it.
+     *
+     * @param key Element key
+     * @param value Element value
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     * @return True if element was put to cache, false if cache already contains it
+     */
+    @Override
+    public boolean putIfAbsent(K key, final V value, long timeToLive, long timeToIdle, TimeUnit unit) {
+        if (key == null || value == null) throw new NullPointerException("Null keys and values are not supported");
+        if (map.containsKey(key)) {
+            if (!expiring || !wheel.isExpired(key, now())) return false;
+            expire(key);
+        }
+        final int w = weigh(key, value);
+        if (w > maxWeight) return false;
+        if (weight.get() + w > maxWeight) {
+            if (!cleaner.admit(key)) return false;
+            evict(w);
+        }
+        final long ttl = unit.toNanos(timeToLive);
+        final long tti = unit.toNanos(timeToIdle);
+        final boolean[] added = new boolean[1];
+        map.computeIfAbsent(key, new Function<K, V>() {
+            @Override
+            public V apply(K k) {
+                cleaner.notifyPut(k);
+                scheduleExpiration(k, ttl, tti);
+                onWrite(k, value);
+                weight.addAndGet(w);
+                added[0] = true;
+                return value;
+            }
+        });
+        if (!added[0]) return false;
+        puts.increment();
+        EventDispatcher<K,V> events = this.events;
+        if (events != null) events.put(key, value);
+        if (LOG.isDebugEnabled())
+            LOG.debug(String.format("Element (%s:%s) was inserted to cache", key, value));
+        maintain();
         return true;
     }
 
+    /**
+     * Replaces element with default expiration only if it's still mapped to the same value
+     * (compared by identity), e.g. to put reloaded value without overwriting a newer one.
+     *
+     * @param key Element key
+     * @param oldValue Expected value
+     * @param newValue New value
+     * @return true if value was replaced
+     */
+    public boolean replace(K key, final V oldValue, final V newValue) {
+        if (key == null || newValue == null) throw new NullPointerException("Null keys and values are not supported");
+        final int w = weigh(key, newValue);
+        if (w > maxWeight) return false;
+        final long ttl = defaultTimeToLive;
+        final long tti = defaultTimeToIdle;
+        final boolean[] replaced = new boolean[1];
+        map.computeIfPresent(key, new BiFunction<K, V, V>() {
+            @Override
+            public V apply(K k, V old) {
+                if (old != oldValue) return old;
+                cleaner.notifyPut(k);
+                scheduleExpiration(k, ttl, tti);
+                onWrite(k, newValue);
+                weight.addAndGet(w - weigh(k, old));
+                replaced[0] = true;
+                return newValue;
+            }
+        });
+        if (!replaced[0]) return false;
+        puts.increment();
+        EventDispatcher<K,V> events = this.events;
+        if (events != null) events.put(key, newValue);
+        // New value may be heavier
+        evict(0);
+        maintain();
+        return true;
+    }
+
+    /**
+     * Returns elements from cache. Eviction strategy is notified once for the whole batch.
+     *
+     * @param keys Value keys
+     * @return Cached values for keys, keys without value are absent
+     */
+    @Override
+    public Map<K,V> getAll(Collection<? extends K> keys) {
+        Map<K,V> res = new HashMap<K, V>();
+        for (K key : keys) {
+            V value = access(key, map.get(key));
+            if (value == null) {
+                misses.increment();
+                cleaner.notifyMiss(key);
+            } else
+                res.put(key, value);
+        }
+        if (!res.isEmpty()) {
+            hits.add(res.size());
+            cleaner.notifyGetAll(res.keySet());
+        }
+        return res;
+    }
+
+    /**
+     * Puts elements to cache with default expiration. Eviction strategy is notified once
+     * for the whole batch and overflow is evicted by one pass, after all elements are put.
+     * Only the last elements of a batch heavier than cache are put, earlier ones would
+     * be evicted by them anyway; cached values of skipped keys are removed as stale.
+     *
+     * @param elements Keys and values
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> elements) {
+        List<K> keys = new ArrayList<K>(elements.size());
+        List<Integer> weights = new ArrayList<Integer>(elements.size());
+        for (Map.Entry<? extends K, ? extends V> entry : elements.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null)
+                throw new NullPointerException("Null keys and values are not supported");
+            keys.add(entry.getKey());
+            weights.add(weigh(entry.getKey(), entry.getValue()));
+        }
+        // Elements which fit into empty cache, from the end of batch
+        int first = keys.size();
+        long batchWeight = 0;
+        while (first > 0 && batchWeight + weights.get(first - 1) <= maxWeight) {
+            batchWeight += weights.get(--first);
+        }
+        final long ttl = defaultTimeToLive;
+        final long tti = defaultTimeToIdle;
+        List<K> written = new ArrayList<K>(keys.size() - first);
+        for (int i = 0; i < keys.size(); i++) {
+            K key = keys.get(i);
+            if (i < first) {
+                removed(key, removeEntry(key));
+                continue;
+            }
+            final V value = elements.get(key);
+            final int w = weights.get(i);
+            if (weight.get() + w > maxWeight && !map.containsKey(key) && !cleaner.admit(key)) continue;
+            map.compute(key, new BiFunction<K, V, V>() {
+                @Override
+                public V apply(K k, V old) {
+                    scheduleExpiration(k, ttl, tti);
+                    onWrite(k, value);
+                    weight.addAndGet(old == null ? w : w - weigh(k, old));
+                    return value;
+                }
+            });
+            written.add(key);
+        }
+        if (written.isEmpty()) return;
+        puts.add(written.size());
+        cleaner.notifyPutAll(written);
+        // Elements removed by other threads before strategy was notified must not stay in it
+        for (K key : written) {
+            if (!map.containsKey(key)) forget(key);
+        }
+        EventDispatcher<K,V> events = this.events;
+        if (events != null) {
+            for (K key : written) {
+                events.put(key, elements.get(key));
+            }
+        }
+        evictOverflow();
+        maintain();
+        if (LOG.isDebugEnabled())
+            LOG.debug(String.format("%d elements were inserted to cache", written.size()));
+        if (expiring && now() >= nextCleanUp) {
+            cleanUp();
+        }
+    }
+
+    /**
+     * Removes elements from cache. Eviction strategy is notified once for the whole batch.
+     *
+     * @param keys Keys of values to be removed
+     */
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        final Map<K,V> removed = new HashMap<K, V>();
+        for (K key : keys) {
+            map.computeIfPresent(key, new BiFunction<K, V, V>() {
+                @Override
+                public V apply(K k, V v) {
+                    onRemoval(k);
+                    if (expiring) wheel.cancel(k);
+                    weight.addAndGet(-weigh(k, v));
+                    removed.put(k, v);
+                    return null;
+                }
+            });
+        }
+        if (removed.isEmpty()) return;
+        cleaner.notifyRemoveAll(removed.keySet());
+        // Elements put again by other threads before strategy was notified must stay in it
+        for (K key : removed.keySet()) {
+            if (map.containsKey(key)) track(key);
+        }
+        EventDispatcher<K,V> events = this.events;
+        if (events != null) {
+            for (Map.Entry<K,V> entry : removed.entrySet()) {
+                events.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug(String.format("%d elements were removed from cache", removed.size()));
+    }
+
+    /**
+     * Set expiration of elements put without explicit one.
+     *
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     */
+    @Override
+    public void setDefaultExpiration(long timeToLive, long timeToIdle, TimeUnit unit) {
+        defaultTimeToLive = unit.toNanos(timeToLive);
+        defaultTimeToIdle = unit.toNanos(timeToIdle);
+    }
+
+    /**
+     * Removes expired elements. Only elements which expiration time has passed are visited.
+     */
+    @Override
+    public void cleanUp() {
+        if (!expiring) return;
+        long now = now();
+        nextCleanUp = now + CLEAN_UP_INTERVAL;
+        for (K key : wheel.advance(now)) {
+            expire(key);
+        }
+    }
+
     public long getPuts() {
-        return puts;
+        return puts.sum();
     }
 
     public long getGets() {
-        return gets;
+        return hits.sum() + misses.sum();
     }
 
     public long getMisses() {
-        return misses;
+        return misses.sum();
     }
 
     public long getHits() {
-        return hits;
+        return hits.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Saves elements to snapshot file in order of eviction strategy, from the one which
+     * would be evicted last, so the hottest elements are restored first.
+     * Expired elements are skipped, expiration itself is not saved.
+     *
+     * @param file Snapshot file, replaced atomically if it exists
+     * @param keySerializer Serializer of keys
+     * @param valueSerializer Serializer of values
+     * @return Number of saved elements
+     * @throws IOException if snapshot can't be written
+     */
+    public int snapshot(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        Collection<K> order = cleaner.ranking();
+        if (order == null) order = new ArrayList<K>(map.keySet());
+        SnapshotWriter<K,V> writer = new SnapshotWriter<K, V>(file, keySerializer, valueSerializer);
+        try {
+            for (K key : order) {
+                V value = getQuiet(key);
+                if (value != null) writer.write(key, value);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Previous snapshot is kept
+            writer.abort();
+            throw e;
+        }
+        writer.close();
+        LOG.info(String.format("%d elements were saved to %s", writer.getCount(), file));
+        return writer.getCount();
+    }
+
+    /**
+     * Puts elements from snapshot file to cache, in order they were saved.
+     * Elements which are already cached are not overwritten, loading stops when cache is full.
+     * Restored elements get default expiration. Once all are loaded, they are queued
+     * to eviction strategy again from the coldest to the hottest, so the hottest ones
+     * are evicted last, as in the saved cache.
+     *
+     * @param file Snapshot file
+     * @param keySerializer Serializer of keys
+     * @param valueSerializer Serializer of values
+     * @return Number of restored elements
+     * @throws IOException if snapshot can't be read
+     */
+    public int restore(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        List<K> restoredKeys = new ArrayList<K>();
+        List<V> restoredValues = new ArrayList<V>();
+        SnapshotReader<K,V> reader = new SnapshotReader<K, V>(file, keySerializer, valueSerializer);
+        try {
+            while (weight.get() < maxWeight && reader.next()) {
+                if (putIfAbsent(reader.getKey(), reader.getValue())) {
+                    restoredKeys.add(reader.getKey());
+                    restoredValues.add(reader.getValue());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        for (int i = restoredKeys.size() - 1; i >= 0; i--) {
+            requeue(restoredKeys.get(i), restoredValues.get(i));
+        }
+        LOG.info(String.format("%d elements were restored from %s", restoredKeys.size(), file));
+        return restoredKeys.size();
+    }
+
+    /**
+     * Restores elements from snapshot file in background, so cache can serve requests meanwhile.
+     * The hottest elements are available first, elements put by the application win over restored ones.
+     *
+     * @param file Snapshot file
+     * @param keySerializer Serializer of keys
+     * @param valueSerializer Serializer of values
+     * @param executor Executor of restore
+     * @return Future of number of restored elements
+     */
+    public CompletableFuture<Integer> restoreAsync(final File file, final Serializer<K> keySerializer,
+                                                   final Serializer<V> valueSerializer, Executor executor) {
+        final CompletableFuture<Integer> res = new CompletableFuture<Integer>();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    res.complete(restore(file, keySerializer, valueSerializer));
+                } catch (Throwable e) {
+                    LOG.warn("Cache can't be restored from " + file, e);
+                    res.completeExceptionally(e);
+                }
+            }
+        });
+        return res;
+    }
+
+    /**
+     * Set listener of puts, evictions, removals and expirations. Listener is called on given executor,
+     * so it doesn't slow cache down; single thread executor delivers events in order.
+     *
+     * @param listener Listener or null to stop listening
+     * @param executor Executor of listener calls
+     */
+    public void setEventListener(CacheEventListener<K,V> listener, Executor executor) {
+        events = listener == null ? null : new EventDispatcher<K, V>(listener, executor);
+    }
+
+    /**
+     * Starts background eviction on a daemon thread, see {@link #startMaintenance(double, double, ThreadFactory)}.
+     *
+     * @param highWatermark Fraction of max weight above which elements are evicted
+     * @param lowWatermark Fraction of max weight to which cache is evicted
+     */
+    public void startMaintenance(double highWatermark, double lowWatermark) {
+        startMaintenance(highWatermark, lowWatermark, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ycache-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts background eviction, so writers don't evict elements themselves.
+     * When weight of cache goes above the high watermark, maintenance thread evicts
+     * elements in batches until it is down to the low watermark. Max weight stays
+     * a hard bound: if writers get ahead of maintenance thread and cache is full,
+     * they evict inline as without maintenance. Eviction strategy is asked to admit
+     * new element only in that case too.
+     * Thread is created by given factory, e.g. it may be a virtual thread.
+     *
+     * @param highWatermark Fraction of max weight above which elements are evicted
+     * @param lowWatermark Fraction of max weight to which cache is evicted
+     * @param threadFactory Factory of maintenance thread
+     */
+    public synchronized void startMaintenance(double highWatermark, double lowWatermark, ThreadFactory threadFactory) {
+        if (!(0 <= lowWatermark && lowWatermark <= highWatermark && highWatermark <= 1))
+            throw new IllegalArgumentException(String.format("Watermarks should satisfy 0 <= low <= high <= 1: %s, %s",
+                    lowWatermark, highWatermark));
+        stopMaintenance();
+        maintainer = new Maintainer(this, (long) (maxWeight * highWatermark), (long) (maxWeight * lowWatermark),
+                threadFactory);
+        LOG.info(String.format("Cache maintenance started (highWatermark=%s,lowWatermark=%s)",
+                highWatermark, lowWatermark));
+    }
+
+    /**
+     * Stops background eviction, writers evict inline again.
+     */
+    public synchronized void stopMaintenance() {
+        Maintainer maintainer = this.maintainer;
+        if (maintainer == null) return;
+        this.maintainer = null;
+        maintainer.stop();
+    }
+
+    /**
+     * Starts measuring latencies of get, put, remove and free and eviction passes of strategy,
+     * and registers them as {@link ycache.metrics.CacheMXBean}. Until then operations are not timed.
+     * Reporters may be added to returned metrics.
+     *
+     * @param name Name of cache, unique among caches with metrics
+     * @return Metrics of cache, the existing ones if they are enabled
+     * @throws IllegalStateException if cache with the same name has metrics enabled
+     */
+    public synchronized CacheMetrics enableMetrics(String name) {
+        if (metrics != null) return metrics;
+        CacheMetrics res = new CacheMetrics(name, cleaner.getClass().getName(), new Supplier<CacheStats>() {
+            @Override
+            public CacheStats get() {
+                return stats();
+            }
+        });
+        res.register();
+        metrics = res;
+        LOG.info("Cache metrics enabled (name=" + name + ")");
+        return res;
+    }
+
+    /**
+     * Stops measuring latencies, unregisters MBean and stops reporters.
+     */
+    public synchronized void disableMetrics() {
+        CacheMetrics metrics = this.metrics;
+        if (metrics == null) return;
+        this.metrics = null;
+        metrics.close();
+    }
+
+    /**
+     * @return Metrics of cache or null if they are disabled
+     */
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get snapshot of cache statistics.
+     *
+     * @return Statistics snapshot
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), puts.sum(),
+                evictions.sum(), loads.sum(), loadTime.sum());
+    }
+
+    private int weigh(K key, V value) {
+        int w = weigher.weigh(key, value);
+        if (w < 0) throw new IllegalArgumentException("Weight can't be negative: " + w);
+        return w;
+    }
+
+    /**
+     * Records value loaded to cache, for implementations which load missing values.
+     *
+     * @param nanos Time spent loading value, in nanoseconds
+     */
+    protected void recordLoad(long nanos) {
+        loads.increment();
+        loadTime.add(nanos);
+    }
+
+    /**
+     * Called under the map's lock for the key when element is put, for subclasses which track elements.
+     *
+     * @param key Key of element
+     * @param value New value
+     */
+    protected void onWrite(K key, V value) {
+    }
+
+    /**
+     * Called under the map's lock for the key when element is evicted or has expired, for subclasses
+     * which have to save element before it is lost. Element can't be put again meanwhile.
+     *
+     * @param key Key of element
+     * @param value Evicted value
+     */
+    protected void onEviction(K key, V value) {
+    }
+
+    /**
+     * Called under the map's lock for the key when element is removed, evicted or has expired.
+     *
+     * @param key Key of element
+     */
+    protected void onRemoval(K key) {
+    }
+
+    /**
+     * Weigher of cache bounded by size.
+     */
+    private static final class SingletonWeigher<K,V> implements Weigher<K,V> {
+        @Override
+        public int weigh(K key, V value) {
+            return 1;
+        }
     }
 }
@@ -0,0 +1,284 @@
+package ycache;
+
+import org.apache.log4j.Logger;
+import ycache.eviction.EvictionStrategy;
+import ycache.eviction.LRUEviction;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory cache which loads missing values by {@link CacheLoader}.
+ * Every missing key is loaded only once at a time: threads which miss the key
+ * while it is being loaded wait for the same load instead of starting their own.
+ * <p>
+ * Cache may refresh elements after given time since they were written. Refresh is
+ * started by access: {@code get} of a stale element returns the cached value at once
+ * and reloads it in background, so keys which are read stay fresh and keys which
+ * are not are left to eviction.
+ *
+ * @version 1.0
+ */
+public class SimpleLoadingCache<K,V> extends SimpleCache<K,V> implements LoadingCache<K,V> {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(SimpleLoadingCache.class);
+
+    private final CacheLoader<K,V> loader;
+    // Executor of asynchronous loads
+    private final Executor executor;
+    // Loads in progress
+    private final ConcurrentHashMap<K,CompletableFuture<V>> loading = new ConcurrentHashMap<K, CompletableFuture<V>>();
+
+    // Time after write when element is refreshed on access, 0 for never
+    private volatile long refreshNanos = 0;
+    // Write time of elements, tracked only while refresh is on
+    private final ConcurrentHashMap<K,Long> writeTimes = new ConcurrentHashMap<K, Long>();
+
+    /**
+     * Constructor that supports specifying eviction strategy and executor of asynchronous loads.
+     *
+     * @param maxSize Max size of cache
+     * @param eviction Eviction strategy
+     * @param loader Loader of missing values
+     * @param executor Executor of asynchronous loads and refreshes, e.g. virtual thread per task executor
+     */
+    public SimpleLoadingCache(int maxSize, EvictionStrategy<K> eviction, CacheLoader<K,V> loader, Executor executor) {
+        super(maxSize, eviction);
+        this.loader = loader;
+        this.executor = executor;
+    }
+
+    /**
+     * Constructor. Uses LRU algorithm and common fork-join pool for asynchronous loads.
+     *
+     * @param maxSize Max size of cache
+     * @param loader Loader of missing values
+     */
+    public SimpleLoadingCache(int maxSize, CacheLoader<K,V> loader) {
+        this(maxSize, new LRUEviction<K>(maxSize), loader, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns element from cache, loading it if it's missing.
+     *
+     * @param key Value key
+     * @return Cached or loaded value, null if loader has no value for key
+     */
+    @Override
+    public V get(K key) {
+        V value = super.get(key);
+        if (value != null) {
+            refreshIfStale(key, value);
+            return value;
+        }
+        CompletableFuture<V> future = loading.get(key);
+        if (future == null) {
+            CompletableFuture<V> own = new CompletableFuture<V>();
+            future = loading.putIfAbsent(key, own);
+            if (future == null) {
+                load(key, own);
+                future = own;
+            }
+        }
+        return join(future);
+    }
+
+    /**
+     * Returns elements from cache, missing ones are loaded by a single {@link CacheLoader#loadAll(Collection)} call.
+     * Eviction strategy is notified once about cached ones.
+     * Keys which are being loaded by other threads are not loaded again.
+     *
+     * @param keys Keys
+     * @return Values for keys, keys without value are absent
+     */
+    @Override
+    public Map<K,V> getAll(Collection<? extends K> keys) {
+        Map<K,V> res = super.getAll(keys);
+        for (Map.Entry<K,V> entry : res.entrySet()) {
+            refreshIfStale(entry.getKey(), entry.getValue());
+        }
+        Map<K,CompletableFuture<V>> pending = new HashMap<K, CompletableFuture<V>>();
+        Map<K,CompletableFuture<V>> own = new HashMap<K, CompletableFuture<V>>();
+        for (K key : keys) {
+            if (res.containsKey(key) || pending.containsKey(key)) continue;
+            CompletableFuture<V> future = new CompletableFuture<V>();
+            CompletableFuture<V> existing = loading.putIfAbsent(key, future);
+            if (existing == null) {
+                own.put(key, future);
+                pending.put(key, future);
+            } else {
+                pending.put(key, existing);
+            }
+        }
+        if (!own.isEmpty()) loadAll(own);
+        for (Map.Entry<K,CompletableFuture<V>> entry : pending.entrySet()) {
+            V value = join(entry.getValue());
+            if (value != null) res.put(entry.getKey(), value);
+        }
+        return res;
+    }
+
+    /**
+     * Returns element from cache, loading it asynchronously if it's missing.
+     *
+     * @param key Value key
+     * @return Future of value, completed exceptionally if value can't be loaded
+     */
+    @Override
+    public CompletableFuture<V> getAsync(final K key) {
+        V value = super.get(key);
+        if (value != null) {
+            refreshIfStale(key, value);
+            return CompletableFuture.completedFuture(value);
+        }
+        final CompletableFuture<V> own = new CompletableFuture<V>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, own);
+        if (existing != null) return existing;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    load(key, own);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Otherwise threads waiting for this load would wait forever
+            loading.remove(key, own);
+            own.completeExceptionally(e);
+            LOG.warn("Load of element " + key + " was rejected by executor");
+        }
+        return own;
+    }
+
+    /**
+     * Set time after write when element is refreshed. Stale element is reloaded
+     * asynchronously on next access, meanwhile the old value is returned.
+     * Applies to elements put after the call.
+     *
+     * @param refreshAfterWrite Time after write, 0 to turn refresh off
+     * @param unit Unit of time
+     */
+    public void setRefreshAfterWrite(long refreshAfterWrite, TimeUnit unit) {
+        if (refreshAfterWrite < 0) throw new IllegalArgumentException("Refresh time can't be negative: " + refreshAfterWrite);
+        refreshNanos = unit.toNanos(refreshAfterWrite);
+        if (refreshNanos == 0) writeTimes.clear();
+    }
+
+    @Override
+    protected void onWrite(K key, V value) {
+        if (refreshNanos > 0) writeTimes.put(key, System.nanoTime());
+    }
+
+    @Override
+    protected void onRemoval(K key) {
+        if (!writeTimes.isEmpty()) writeTimes.remove(key);
+    }
+
+    /**
+     * Starts asynchronous reload of element if it's older than refresh time and it isn't being loaded already.
+     */
+    private void refreshIfStale(final K key, final V value) {
+        long refresh = refreshNanos;
+        if (refresh == 0) return;
+        Long written = writeTimes.get(key);
+        if (written == null || System.nanoTime() - written < refresh) return;
+        final CompletableFuture<V> own = new CompletableFuture<V>();
+        if (loading.putIfAbsent(key, own) != null) return;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    reload(key, value, own);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Old value is served until next access
+            loading.remove(key, own);
+            own.complete(value);
+            LOG.warn("Refresh of element " + key + " was rejected by executor");
+        }
+    }
+
+    /**
+     * Reloads cached value and completes the future. Element which was removed or put meanwhile
+     * is not overwritten.
+     */
+    private void reload(K key, V oldValue, CompletableFuture<V> future) {
+        try {
+            long start = System.nanoTime();
+            V value = loader.reload(key, oldValue);
+            recordLoad(System.nanoTime() - start);
+            if (value == null) {
+                remove(key, oldValue);
+            } else {
+                replace(key, oldValue, value);
+            }
+            future.complete(value);
+        } catch (Throwable e) {
+            // Old value is served and refresh is retried on next access
+            LOG.warn("Element " + key + " can't be refreshed", e);
+            future.completeExceptionally(e);
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Loads value, puts it to cache and completes the future. Called by thread which registered the future.
+     */
+    private void load(K key, CompletableFuture<V> future) {
+        try {
+            // Other thread may have loaded value before this load was registered
+            V value = getQuiet(key);
+            if (value == null) {
+                long start = System.nanoTime();
+                value = loader.load(key);
+                recordLoad(System.nanoTime() - start);
+                if (value != null) put(key, value);
+            }
+            future.complete(value);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private void loadAll(Map<K,CompletableFuture<V>> futures) {
+        try {
+            long start = System.nanoTime();
+            Map<K,V> values = loader.loadAll(futures.keySet());
+            recordLoad(System.nanoTime() - start);
+            for (Map.Entry<K,CompletableFuture<V>> entry : futures.entrySet()) {
+                V value = values.get(entry.getKey());
+                if (value != null) put(entry.getKey(), value);
+                entry.getValue().complete(value);
+            }
+        } catch (Throwable e) {
+            for (CompletableFuture<V> future : futures.values()) {
+                future.completeExceptionally(e);
+            }
+        } finally {
+            for (Map.Entry<K,CompletableFuture<V>> entry : futures.entrySet()) {
+                loading.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof CacheLoadingException) throw (CacheLoadingException) cause;
+            throw new CacheLoadingException("Value can't be loaded", cause);
+        }
+    }
+}
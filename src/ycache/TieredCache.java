@@ -0,0 +1,353 @@
+package ycache;
+
+import org.apache.log4j.Logger;
+import ycache.disk.LogStore;
+import ycache.eviction.EvictionStrategy;
+import ycache.eviction.LRUEviction;
+import ycache.serializer.Serializer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Two-tier cache: elements evicted from the heap tier are not lost but demoted
+ * to the disk tier, a {@link LogStore} of serialized values. Element found on disk
+ * is promoted back to the heap, so every element lives in one tier.
+ * Evicted elements wait for demotion in memory and are written to disk by the next
+ * operation under their key lock, so eviction doesn't wait for disk and doesn't race
+ * with put or promotion of the same key. Promoted element rejected by heap admission
+ * stays on disk.
+ * Disk tier is bounded by bytes and drops its oldest elements when it is full.
+ * <p>
+ * Hits of each tier are counted separately. Disk data lives while cache is open,
+ * cache should be closed to delete the log file.
+ *
+ * @version 1.0
+ */
+public class TieredCache<K,V> implements Cache<K,V>, Closeable {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(TieredCache.class);
+
+    // Number of locks which order operations on the same key
+    private static final int STRIPES = 64;
+
+    private final SimpleCache<K,V> heap;
+    private final LogStore<K> disk;
+    private final Serializer<V> serializer;
+    // Elements evicted from heap and not written to disk yet
+    private final ConcurrentMap<K,V> demoting = new ConcurrentHashMap<K, V>();
+    // Promotion and put of a key don't interleave
+    private final ReentrantLock[] keyLocks = new ReentrantLock[STRIPES];
+
+    // Statistics
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+
+    /**
+     * Constructor that supports specifying eviction strategy of the heap tier.
+     *
+     * @param heapSize Max number of elements on heap
+     * @param eviction Eviction strategy of the heap tier
+     * @param file Log file of the disk tier, replaced if it exists
+     * @param maxDiskBytes Max number of bytes on disk
+     * @param serializer Serializer of values
+     */
+    public TieredCache(int heapSize, EvictionStrategy<K> eviction, File file, long maxDiskBytes,
+                       Serializer<V> serializer) {
+        this.disk = new LogStore<K>(file, maxDiskBytes);
+        this.serializer = serializer;
+        this.heap = new SimpleCache<K, V>(heapSize, eviction) {
+            @Override
+            protected void onEviction(K key, V value) {
+                demoting.put(key, value);
+            }
+        };
+        for (int i = 0; i < STRIPES; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+        LOG.info(String.format("Tiered cache object created (heapSize=%d,file=%s,maxDiskBytes=%d)",
+                heapSize, file, maxDiskBytes));
+    }
+
+    /**
+     * Constructor. Uses LRU algorithm on heap by default.
+     *
+     * @param heapSize Max number of elements on heap
+     * @param file Log file of the disk tier, replaced if it exists
+     * @param maxDiskBytes Max number of bytes on disk
+     * @param serializer Serializer of values
+     */
+    public TieredCache(int heapSize, File file, long maxDiskBytes, Serializer<V> serializer) {
+        this(heapSize, new LRUEviction<K>(heapSize), file, maxDiskBytes, serializer);
+    }
+
+    /**
+     * Puts element to the heap tier, dropping its old value from disk.
+     *
+     * @param key   Key
+     * @param value Value
+     */
+    @Override
+    public void put(K key, V value) {
+        ReentrantLock keyLock = lockFor(key);
+        keyLock.lock();
+        try {
+            demoting.remove(key);
+            disk.delete(key);
+            heap.put(key, value);
+        } finally {
+            keyLock.unlock();
+        }
+        demote();
+    }
+
+    /**
+     * Returns element from heap, or from disk promoting it to heap.
+     *
+     * @param key Value key
+     * @return Cached value for given key
+     */
+    @Override
+    public V get(K key) {
+        V value = heap.get(key);
+        if (value != null) {
+            heapHits.increment();
+            return value;
+        }
+        ReentrantLock keyLock = lockFor(key);
+        keyLock.lock();
+        try {
+            // Element may have been put or promoted meanwhile
+            value = heap.getQuiet(key);
+            if (value != null) {
+                heapHits.increment();
+                return value;
+            }
+            // Element waiting for demotion is found as if it was on disk
+            value = demoting.remove(key);
+            byte[] data = null;
+            if (value == null) {
+                data = disk.remove(key);
+                if (data == null) {
+                    misses.increment();
+                    return null;
+                }
+                value = serializer.deserialize(data);
+            }
+            diskHits.increment();
+            if (heap.putIfAbsent(key, value)) {
+                promotions.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Element " + key + " was promoted to heap");
+            } else {
+                // Heap didn't admit the element, so it stays on disk
+                if (data == null) data = serializer.serialize(value);
+                if (!disk.put(key, data))
+                    LOG.warn("Element " + key + " doesn't fit into disk tier");
+            }
+        } finally {
+            keyLock.unlock();
+        }
+        demote();
+        return value;
+    }
+
+    /**
+     * Removes element from both tiers.
+     *
+     * @param key Key of value to be removed
+     */
+    @Override
+    public void remove(K key) {
+        ReentrantLock keyLock = lockFor(key);
+        keyLock.lock();
+        try {
+            heap.remove(key);
+            demoting.remove(key);
+            disk.delete(key);
+        } finally {
+            keyLock.unlock();
+        }
+    }
+
+    /**
+     * Clear both tiers, nothing is demoted.
+     */
+    @Override
+    public void clear() {
+        heap.clear();
+        demoting.clear();
+        disk.clear();
+    }
+
+    /**
+     * Get current count of cached elements in both tiers.
+     *
+     * @return Current count of cached elements
+     */
+    @Override
+    public long size() {
+        return heap.size() + demoting.size() + disk.size();
+    }
+
+    @Override
+    public Set<K> keys() {
+        Set<K> res = new HashSet<K>(heap.keys());
+        res.addAll(demoting.keySet());
+        res.addAll(disk.keys());
+        return res;
+    }
+
+    @Override
+    public Collection<V> values() {
+        List<V> res = new ArrayList<V>(heap.values());
+        res.addAll(demoting.values());
+        for (K key : disk.keys()) {
+            byte[] data = disk.get(key);
+            if (data != null) res.add(serializer.deserialize(data));
+        }
+        return res;
+    }
+
+    /**
+     * Free heap space by demoting {@code count} elements to disk.
+     *
+     * @param count Number of elements
+     */
+    @Override
+    public void free(int count) {
+        heap.free(count);
+        demote();
+    }
+
+    /**
+     * Get element without touching cache access stats. Element found on disk is not promoted.
+     *
+     * @param key Key
+     * @return Cached value for given key
+     */
+    @Override
+    public V getQuiet(K key) {
+        V value = heap.getQuiet(key);
+        if (value == null) value = demoting.get(key);
+        if (value != null) return value;
+        byte[] data = disk.get(key);
+        return data == null ? null : serializer.deserialize(data);
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return heap.contains(key) || demoting.containsKey(key) || disk.contains(key);
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        ReentrantLock keyLock = lockFor(key);
+        keyLock.lock();
+        boolean added;
+        try {
+            if (demoting.containsKey(key) || disk.contains(key)) return false;
+            added = heap.putIfAbsent(key, value);
+        } finally {
+            keyLock.unlock();
+        }
+        demote();
+        return added;
+    }
+
+    /**
+     * Deletes the log file.
+     */
+    @Override
+    public void close() {
+        heap.clear();
+        demoting.clear();
+        disk.close();
+    }
+
+    /**
+     * @return Number of elements on heap
+     */
+    public long getHeapSize() {
+        return heap.size();
+    }
+
+    /**
+     * @return Number of elements on disk
+     */
+    public long getDiskSize() {
+        return disk.size();
+    }
+
+    public long getHeapHits() {
+        return heapHits.sum();
+    }
+
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getPromotions() {
+        return promotions.sum();
+    }
+
+    public long getDemotions() {
+        return demotions.sum();
+    }
+
+    /**
+     * @return Number of log compactions of the disk tier
+     */
+    public long getCompactions() {
+        return disk.getCompactions();
+    }
+
+    /**
+     * Writes elements evicted from heap to disk. Called without key locks held,
+     * takes the lock of every demoted key, so put or promotion of the key doesn't interleave.
+     * Element which is back on heap meanwhile is not written.
+     */
+    private void demote() {
+        if (demoting.isEmpty()) return;
+        for (K key : demoting.keySet()) {
+            ReentrantLock keyLock = lockFor(key);
+            keyLock.lock();
+            try {
+                V value = demoting.remove(key);
+                if (value == null || heap.contains(key)) continue;
+                if (disk.put(key, serializer.serialize(value))) {
+                    demotions.increment();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Element " + key + " was demoted to disk");
+                } else {
+                    LOG.warn("Element " + key + " doesn't fit into disk tier");
+                }
+            } finally {
+                keyLock.unlock();
+            }
+        }
+    }
+
+    private ReentrantLock lockFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return keyLocks[h & (STRIPES - 1)];
+    }
+}
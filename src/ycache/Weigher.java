@@ -0,0 +1,18 @@
+package ycache;
+
+/**
+ * Calculates weight of cache element, e.g. its approximate size in bytes.
+ * Cache bounded by weight evicts elements until their total weight fits the budget.
+ * Weight of element should not change while it is cached.
+ * @version 1.0
+ */
+public interface Weigher<K, V> {
+
+    /**
+     * Returns weight of element.
+     * @param key Element key
+     * @param value Element value
+     * @return Non-negative weight
+     */
+    int weigh(K key, V value);
+}
@@ -0,0 +1,454 @@
+package ycache;
+
+import org.apache.log4j.Logger;
+import ycache.eviction.EvictionStrategy;
+import ycache.eviction.LRUEviction;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory cache which writes changes to underlying store by {@link CacheWriter} in background.
+ * Puts and removes are acknowledged at memory speed: they only record the change.
+ * Changes of the same key are coalesced, so only the latest one is written.
+ * Background thread writes changes in batches, when batch is full or after flush delay.
+ * If too many changes are not written yet, puts and removes wait (backpressure).
+ * Evicted element which was not written yet stays recorded, so it is never lost,
+ * and background thread is woken up to write it without waiting for flush delay.
+ * Evicting thread doesn't wait for the store.
+ * <p>
+ * Clearing cache and expiration don't change the store.
+ * Cache should be closed to write remaining changes and stop background thread.
+ *
+ * @version 1.0
+ */
+public class WriteBehindCache<K,V> extends SimpleCache<K,V> implements Closeable {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(WriteBehindCache.class);
+
+    // Change which deletes key
+    private static final Object DELETED = new Object();
+    // Number of locks which order changes of the same key
+    private static final int STRIPES = 64;
+
+    private final CacheWriter<K,V> writer;
+    private final int batchSize;
+    private final long flushDelay;
+    private final int maxPending;
+
+    // Changes not written yet, value or DELETED for every key, guarded by lock
+    private final LinkedHashMap<K,Object> pending = new LinkedHashMap<K, Object>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    // Writes go one at a time, so older change of a key is never written after newer one
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Change of key is recorded and applied to cache under the same lock
+    private final ReentrantLock[] keyLocks = new ReentrantLock[STRIPES];
+
+    private final Thread flusher;
+    private volatile boolean running = true;
+    // Set when evicted element waits to be written, so flush doesn't wait for batch to fill up, guarded by lock
+    private boolean evicted = false;
+
+    // Statistics
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Constructor that supports specifying eviction strategy and write batching.
+     *
+     * @param maxSize Max size of cache
+     * @param eviction Eviction strategy
+     * @param writer Writer of changes
+     * @param batchSize Max number of changes written at once
+     * @param flushDelay Max time change waits for batch to fill up
+     * @param unit Unit of time
+     * @param maxPending Number of changes not written yet after which puts and removes wait
+     */
+    public WriteBehindCache(int maxSize, EvictionStrategy<K> eviction, CacheWriter<K,V> writer,
+                            int batchSize, long flushDelay, TimeUnit unit, int maxPending) {
+        super(maxSize, eviction);
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size should be positive: " + batchSize);
+        if (maxPending < batchSize)
+            throw new IllegalArgumentException(String.format("Max pending changes %d are less than batch size %d", maxPending, batchSize));
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.flushDelay = unit.toNanos(flushDelay);
+        this.maxPending = maxPending;
+        for (int i = 0; i < STRIPES; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "ycache-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Constructor. Uses LRU algorithm, writes up to 100 changes at once, at least every 100 milliseconds.
+     *
+     * @param maxSize Max size of cache
+     * @param writer Writer of changes
+     */
+    public WriteBehindCache(int maxSize, CacheWriter<K,V> writer) {
+        this(maxSize, new LRUEviction<K>(maxSize), writer, 100, 100, TimeUnit.MILLISECONDS, 10000);
+    }
+
+    /**
+     * Puts element to cache and records it to be written.
+     *
+     * @param key Key
+     * @param value Value
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     */
+    @Override
+    public void put(K key, V value, long timeToLive, long timeToIdle, TimeUnit unit) {
+        if (key == null || value == null) throw new NullPointerException("Null keys and values are not supported");
+        awaitCapacity();
+        ReentrantLock keyLock = lockFor(key);
+        keyLock.lock();
+        try {
+            enqueue(key, value);
+            super.put(key, value, timeToLive, timeToIdle, unit);
+        } finally {
+            keyLock.unlock();
+        }
+    }
+
+    /**
+     * Put element to cache only if it doesn't already contain it. Element which was put is recorded to be written.
+     *
+     * @param key Element key
+     * @param value Element value
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param unit Unit of time
+     * @return True if element was put to cache, false if cache already contains it
+     */
+    @Override
+    public boolean putIfAbsent(K key, V value, long timeToLive, long timeToIdle, TimeUnit unit) {
+        if (key == null || value == null) throw new NullPointerException("Null keys and values are not supported");
+        awaitCapacity();
+        ReentrantLock keyLock = lockFor(key);
+        keyLock.lock();
+        try {
+            if (!super.putIfAbsent(key, value, timeToLive, timeToIdle, unit)) return false;
+            enqueue(key, value);
+            return true;
+        } finally {
+            keyLock.unlock();
+        }
+    }
+
+    /**
+     * Removes element from cache and records it to be deleted.
+     *
+     * @param key Key of value to be removed
+     */
+    @Override
+    public void remove(K key) {
+        awaitCapacity();
+        ReentrantLock keyLock = lockFor(key);
+        keyLock.lock();
+        try {
+            enqueue(key, DELETED);
+            super.remove(key);
+        } finally {
+            keyLock.unlock();
+        }
+    }
+
+    /**
+     * Puts elements to cache and records them to be written.
+     *
+     * @param elements Keys and values
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> elements) {
+        awaitCapacity();
+        boolean[] stripes = lockAll(elements.keySet());
+        try {
+            for (Map.Entry<? extends K, ? extends V> entry : elements.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null)
+                    throw new NullPointerException("Null keys and values are not supported");
+            }
+            for (Map.Entry<? extends K, ? extends V> entry : elements.entrySet()) {
+                enqueue(entry.getKey(), entry.getValue());
+            }
+            super.putAll(elements);
+        } finally {
+            unlockAll(stripes);
+        }
+    }
+
+    /**
+     * Removes elements from cache and records them to be deleted.
+     *
+     * @param keys Keys of values to be removed
+     */
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        awaitCapacity();
+        boolean[] stripes = lockAll(keys);
+        try {
+            for (K key : keys) {
+                enqueue(key, DELETED);
+            }
+            super.removeAll(keys);
+        } finally {
+            unlockAll(stripes);
+        }
+    }
+
+    /**
+     * Writes all recorded changes now, in the calling thread.
+     */
+    public void flush() {
+        while (flushBatch()) {
+            // Until there is nothing to write
+        }
+    }
+
+    /**
+     * Writes remaining changes and stops background thread.
+     */
+    @Override
+    public void close() {
+        running = false;
+        lock.lock();
+        try {
+            changed.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * @return Number of changes not written yet
+     */
+    public int getPendingChanges() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of written changes
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * @return Number of failed attempts to write changes
+     */
+    public long getWriteFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Wakes background thread up if evicted element was not written yet.
+     * Called under the map's lock for the key, so it doesn't wait for the store.
+     */
+    @Override
+    protected void onEviction(K key, V value) {
+        lock.lock();
+        try {
+            if (pending.containsKey(key)) {
+                evicted = true;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            lock.lock();
+            try {
+                while (running && pending.isEmpty()) {
+                    changed.await();
+                }
+                // Let more changes come and coalesce, unless they are not cached anymore
+                long wait = flushDelay;
+                while (running && !evicted && pending.size() < batchSize && wait > 0) {
+                    wait = changed.awaitNanos(wait);
+                }
+                evicted = false;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (!flushBatch() && getPendingChanges() > 0) {
+                // Store fails, don't retry at once
+                try {
+                    TimeUnit.NANOSECONDS.sleep(flushDelay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes up to batch size changes and writes them.
+     *
+     * @return true if changes were written, false if there was nothing to write or writing failed
+     */
+    private boolean flushBatch() {
+        writeLock.lock();
+        try {
+            Map<K,V> values = new LinkedHashMap<K, V>();
+            List<K> deleted = new ArrayList<K>();
+            lock.lock();
+            try {
+                Iterator<Map.Entry<K,Object>> it = pending.entrySet().iterator();
+                for (int i = 0; i < batchSize && it.hasNext(); i++) {
+                    Map.Entry<K,Object> entry = it.next();
+                    add(entry.getKey(), entry.getValue(), values, deleted);
+                    it.remove();
+                }
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (values.isEmpty() && deleted.isEmpty()) return false;
+            return write(values, deleted);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes changes. Failed changes are recorded again unless the key has changed meanwhile.
+     * Called under write lock.
+     *
+     * @return true if changes were written
+     */
+    private boolean write(Map<K,V> values, List<K> deleted) {
+        try {
+            if (!values.isEmpty()) writer.writeAll(values);
+            if (!deleted.isEmpty()) writer.deleteAll(deleted);
+            writes.add(values.size() + deleted.size());
+            return true;
+        } catch (Throwable e) {
+            failures.increment();
+            LOG.warn(String.format("%d changes can't be written, they will be retried", values.size() + deleted.size()), e);
+            lock.lock();
+            try {
+                for (Map.Entry<K,V> entry : values.entrySet()) {
+                    if (!pending.containsKey(entry.getKey())) pending.put(entry.getKey(), entry.getValue());
+                }
+                for (K key : deleted) {
+                    if (!pending.containsKey(key)) pending.put(key, DELETED);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(K key, Object change, Map<K,V> values, List<K> deleted) {
+        if (change == DELETED) {
+            deleted.add(key);
+        } else {
+            values.put(key, (V) change);
+        }
+    }
+
+    /**
+     * Records change, replacing not written change of the same key.
+     */
+    private void enqueue(K key, Object change) {
+        lock.lock();
+        try {
+            // Re-insert, so key takes its place in order of changes
+            pending.remove(key);
+            pending.put(key, change);
+            int size = pending.size();
+            if (size == 1 || size >= batchSize) changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits while there are too many changes not written yet.
+     */
+    private void awaitCapacity() {
+        lock.lock();
+        try {
+            while (running && pending.size() >= maxPending) {
+                notFull.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(K key) {
+        return keyLocks[stripe(key)];
+    }
+
+    private int stripe(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (STRIPES - 1);
+    }
+
+    /**
+     * Locks stripes of keys in order of stripes, so batches never deadlock.
+     *
+     * @return Locked stripes
+     */
+    private boolean[] lockAll(Collection<? extends K> keys) {
+        boolean[] stripes = new boolean[STRIPES];
+        for (K key : keys) {
+            if (key == null) throw new NullPointerException("Null keys and values are not supported");
+            stripes[stripe(key)] = true;
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            if (stripes[i]) keyLocks[i].lock();
+        }
+        return stripes;
+    }
+
+    private void unlockAll(boolean[] stripes) {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            if (stripes[i]) keyLocks[i].unlock();
+        }
+    }
+}
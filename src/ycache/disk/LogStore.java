@@ -0,0 +1,293 @@
+package ycache.disk;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Disk store of byte arrays, an append-only log file with in-memory index from key to record.
+ * Every write appends a record, so replaced and removed records become garbage
+ * which is dropped by compaction: when garbage is the larger part of the file,
+ * live records are copied to a new file which replaces the old one.
+ * Store is bounded by number of live bytes, the oldest records are dropped to make room.
+ * <p>
+ * Record is data length followed by data. Index is not saved, so log is only valid while store is open.
+ * All operations are synchronized. I/O errors are thrown as {@link UncheckedIOException}.
+ * @version 1.0
+ */
+public class LogStore<K> implements Closeable {
+
+    // Bytes before data of record
+    private static final int HEADER = 4;
+    // Log smaller than this is not compacted
+    private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+    private final File file;
+    private final long maxBytes;
+    private FileChannel channel;
+
+    // Position and length of live records, oldest first
+    private final LinkedHashMap<K,Record> index = new LinkedHashMap<K, Record>();
+    // Bytes of live records, including headers
+    private long liveBytes = 0;
+    // End of log
+    private long fileBytes = 0;
+    private long compactions = 0;
+
+    /**
+     * Creates store, replacing existing file.
+     *
+     * @param file Log file
+     * @param maxBytes Max number of live bytes
+     */
+    public LogStore(File file, long maxBytes) {
+        if (maxBytes <= HEADER) throw new IllegalArgumentException("Store size is too small: " + maxBytes);
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.channel = open(file);
+    }
+
+    /**
+     * Writes data for key, replacing previous one. The oldest records are dropped if there is no room.
+     *
+     * @param key Key
+     * @param data Data
+     * @return true if data was written, false if it is larger than store
+     */
+    public synchronized boolean put(K key, byte[] data) {
+        long length = HEADER + data.length;
+        if (length > maxBytes) return false;
+        drop(index.remove(key));
+        Iterator<Record> oldest = index.values().iterator();
+        while (liveBytes + length > maxBytes) {
+            drop(oldest.next());
+            oldest.remove();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        buffer.putInt(data.length).put(data).flip();
+        try {
+            write(channel, buffer, fileBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Log can't be written: " + file, e);
+        }
+        index.put(key, new Record(fileBytes, data.length));
+        fileBytes += length;
+        liveBytes += length;
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Reads data for key.
+     *
+     * @param key Key
+     * @return Data or null if there is no such key
+     */
+    public synchronized byte[] get(K key) {
+        Record record = index.get(key);
+        return record == null ? null : read(record);
+    }
+
+    /**
+     * Removes data for key.
+     *
+     * @param key Key
+     * @return Removed data or null if there was no such key
+     */
+    public synchronized byte[] remove(K key) {
+        Record record = index.remove(key);
+        if (record == null) return null;
+        byte[] data = read(record);
+        drop(record);
+        compactIfNeeded();
+        return data;
+    }
+
+    /**
+     * Removes key without reading its data.
+     *
+     * @param key Key
+     * @return true if key was removed
+     */
+    public synchronized boolean delete(K key) {
+        Record record = index.remove(key);
+        drop(record);
+        return record != null;
+    }
+
+    public synchronized boolean contains(K key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * @return Number of keys
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return Snapshot of keys
+     */
+    public synchronized Set<K> keys() {
+        return new HashSet<K>(index.keySet());
+    }
+
+    /**
+     * @return Bytes of live records
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * @return Size of log file
+     */
+    public synchronized long getFileBytes() {
+        return fileBytes;
+    }
+
+    /**
+     * @return Number of compactions since creation
+     */
+    public synchronized long getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Removes all keys and truncates log.
+     */
+    public synchronized void clear() {
+        index.clear();
+        liveBytes = 0;
+        fileBytes = 0;
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Log can't be truncated: " + file, e);
+        }
+    }
+
+    /**
+     * Closes and deletes log file.
+     */
+    @Override
+    public synchronized void close() {
+        index.clear();
+        try {
+            channel.close();
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Log can't be closed: " + file, e);
+        }
+    }
+
+    /**
+     * Copies live records to a new log, when garbage takes more than half of the log.
+     * Index is updated only after the new log replaces the old one, so failed compaction
+     * leaves the store reading the old log.
+     */
+    private void compactIfNeeded() {
+        if (fileBytes < MIN_COMPACTION_SIZE || liveBytes * 2 > fileBytes) return;
+        File compacted = new File(file.getPath() + ".compact");
+        FileChannel target = open(compacted);
+        // Positions of records in the new log, in order of index
+        long[] positions = new long[index.size()];
+        long position = 0;
+        FileChannel reopened;
+        try {
+            try {
+                int i = 0;
+                for (Record record : index.values()) {
+                    long length = HEADER + record.length;
+                    long copied = 0;
+                    while (copied < length) {
+                        copied += channel.transferTo(record.position + copied, length - copied, target);
+                    }
+                    positions[i++] = position;
+                    position += length;
+                }
+            } finally {
+                target.close();
+            }
+            Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            reopened = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(compacted.toPath());
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException("Log can't be compacted: " + file, e);
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Old log is replaced anyway
+        }
+        channel = reopened;
+        int i = 0;
+        for (Map.Entry<K,Record> entry : index.entrySet()) {
+            entry.setValue(new Record(positions[i++], entry.getValue().length));
+        }
+        fileBytes = position;
+        compactions++;
+    }
+
+    private void drop(Record record) {
+        if (record != null) liveBytes -= HEADER + record.length;
+    }
+
+    private byte[] read(Record record) {
+        ByteBuffer buffer = ByteBuffer.allocate(record.length);
+        try {
+            long position = record.position + HEADER;
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, position + buffer.position());
+                if (n < 0) throw new IOException("Log is truncated");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Log can't be read: " + file, e);
+        }
+        return buffer.array();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static FileChannel open(File file) {
+        try {
+            return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Log can't be created: " + file, e);
+        }
+    }
+
+    /**
+     * Position and data length of record.
+     */
+    private static final class Record {
+        final long position;
+        final int length;
+
+        Record(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package ycache.eviction;
+
+import java.util.*;
+
+/**
+ * ARC (Adaptive Replacement Cache) algorithm for cache elements eviction.
+ * Cached keys are split into two LRU lists: T1 of keys accessed once since they were
+ * put and T2 of keys accessed again. Evicted keys are remembered, without values,
+ * in ghost lists B1 and B2 of the same kind. Miss of a key from B1 means recency
+ * list was too short, so its target size {@code p} grows, miss of a key from B2
+ * means frequency list was too short, so {@code p} shrinks. Victim is taken from
+ * T1 while it is larger than its target, otherwise from T2.
+ * Key which comes back from a ghost list is put to T2.
+ * <p>
+ * Strategy learns about misses from {@link #notifyMiss(Object)}. Only evicted keys
+ * become ghosts: keys returned by {@link #nextVictims(int)} and then removed by cache.
+ * Each of T1 + B1 and T1 + T2 + B1 + B2 is bounded by cache size and twice
+ * the cache size respectively, as in the original algorithm.
+ * @version 1.0
+ */
+public class ARCEviction<K> implements EvictionStrategy<K> {
+
+    private final Map<K,Node<K>> lookup;
+    private final int cacheSize;
+
+    private final Segment<K> t1 = new Segment<K>(false);
+    private final Segment<K> t2 = new Segment<K>(false);
+    private final Segment<K> b1 = new Segment<K>(true);
+    private final Segment<K> b2 = new Segment<K>(true);
+
+    // Target size of T1
+    private int p = 0;
+
+    public ARCEviction(int cacheSize) {
+        if (cacheSize <= 0) throw new IllegalArgumentException("Cache size should be positive: " + cacheSize);
+        this.cacheSize = cacheSize;
+        this.lookup = new HashMap<K, Node<K>>(cacheSize * 2);
+    }
+
+    /**
+     * Called by cache to notify about closing.
+     */
+    @Override
+    public synchronized void notifyClear() {
+        lookup.clear();
+        t1.clear();
+        t2.clear();
+        b1.clear();
+        b2.clear();
+        p = 0;
+    }
+
+    /**
+     * Called by cache to notify about new element.
+     * Element which was recently evicted is put to frequency list.
+     *
+     * @param key Key of new element
+     */
+    @Override
+    public synchronized void notifyPut(K key) {
+        Node<K> node = lookup.get(key);
+        if (node == null) {
+            node = new Node<K>(key);
+            lookup.put(key, node);
+            t1.addFirst(node);
+            trim();
+            return;
+        }
+        if (node.segment.ghost) {
+            if (!node.adapted) adapt(node);
+            node.segment.remove(node);
+            node.adapted = false;
+        } else {
+            node.segment.remove(node);
+        }
+        node.evicting = false;
+        t2.addFirst(node);
+        trim();
+    }
+
+    /**
+     * Called by cache to notify about accessing element.
+     *
+     * @param key
+     */
+    @Override
+    public synchronized void notifyGet(K key) {
+        Node<K> node = lookup.get(key);
+        if (node == null || node.segment.ghost) return;
+        node.segment.remove(node);
+        node.evicting = false;
+        t2.addFirst(node);
+    }
+
+    /**
+     * Called by cache to notify about missing element.
+     * Miss of a recently evicted key adapts target size of recency list.
+     *
+     * @param key Key of missing element
+     */
+    @Override
+    public synchronized void notifyMiss(K key) {
+        Node<K> node = lookup.get(key);
+        if (node == null || !node.segment.ghost || node.adapted) return;
+        adapt(node);
+        node.adapted = true;
+    }
+
+    /**
+     * Called by cache to notify about removing element.
+     * Element removed after it was chosen as a victim becomes a ghost.
+     *
+     * @param key
+     */
+    @Override
+    public synchronized void notifyRemove(K key) {
+        Node<K> node = lookup.get(key);
+        if (node == null || node.segment.ghost) return;
+        Segment<K> segment = node.segment;
+        segment.remove(node);
+        if (!node.evicting) {
+            lookup.remove(key);
+            return;
+        }
+        node.evicting = false;
+        (segment == t1 ? b1 : b2).addFirst(node);
+        trim();
+    }
+
+    /**
+     * Called by cache to notify about batch of new elements, under a single lock.
+     *
+     * @param keys Keys of new elements
+     */
+    @Override
+    public synchronized void notifyPutAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyPut(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about accessing batch of elements, under a single lock.
+     *
+     * @param keys Keys of accessed elements
+     */
+    @Override
+    public synchronized void notifyGetAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyGet(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about removing batch of elements, under a single lock.
+     *
+     * @param keys Keys of removed elements
+     */
+    @Override
+    public synchronized void notifyRemoveAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyRemove(key);
+        }
+    }
+
+    /**
+     * Returns cached keys from the one which would be evicted last to the next victim.
+     *
+     * @return Keys in eviction order, reversed
+     */
+    @Override
+    public synchronized List<K> ranking() {
+        List<K> res = victims(t1.size + t2.size);
+        Collections.reverse(res);
+        return res;
+    }
+
+    /**
+     * Returns next elements to be removed according to this algorithm (LRU, LFU...).
+     *
+     * @return Collection of keys
+     */
+    @Override
+    public synchronized Collection<K> nextVictims(int count) {
+        if (count > t1.size + t2.size) throw new IllegalStateException(count+" elements can't be evicted");
+        List<K> res = victims(count);
+        for (K key : res) {
+            lookup.get(key).evicting = true;
+        }
+        return res;
+    }
+
+    /**
+     * @return Target size of recency list, for tests and monitoring
+     */
+    public synchronized int getRecencyTarget() {
+        return p;
+    }
+
+    /**
+     * Chooses victims as if they were evicted one by one, without changing lists.
+     */
+    private List<K> victims(int count) {
+        List<K> res = new ArrayList<K>(count);
+        int size1 = t1.size;
+        Node<K> last1 = t1.head.prev;
+        Node<K> last2 = t2.head.prev;
+        for (int i = 0; i < count; i++) {
+            if (size1 > 0 && (size1 > p || last2 == t2.head)) {
+                res.add(last1.key);
+                last1 = last1.prev;
+                size1--;
+            } else {
+                res.add(last2.key);
+                last2 = last2.prev;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Moves target size of recency list towards the ghost list which was hit.
+     */
+    private void adapt(Node<K> node) {
+        if (node.segment == b1) {
+            p = Math.min(cacheSize, p + Math.max(b2.size / b1.size, 1));
+        } else {
+            p = Math.max(0, p - Math.max(b1.size / b2.size, 1));
+        }
+    }
+
+    /**
+     * Forgets the oldest ghosts while lists are larger than the bounds of the algorithm.
+     */
+    private void trim() {
+        while (t1.size + b1.size > cacheSize && b1.size > 0) {
+            forget(b1.head.prev);
+        }
+        while (t1.size + t2.size + b1.size + b2.size > 2 * cacheSize && b2.size > 0) {
+            forget(b2.head.prev);
+        }
+    }
+
+    private void forget(Node<K> node) {
+        node.segment.remove(node);
+        lookup.remove(node.key);
+    }
+
+    /**
+     * LRU list of keys, head.next is the most recently used one.
+     */
+    private static final class Segment<K> {
+        final Node<K> head = new Node<K>(null);
+        final boolean ghost;
+        int size = 0;
+
+        Segment(boolean ghost) {
+            this.ghost = ghost;
+        }
+
+        void addFirst(Node<K> node) {
+            node.prev = head;
+            node.next = head.next;
+            head.next.prev = node;
+            head.next = node;
+            node.segment = this;
+            size++;
+        }
+
+        void remove(Node<K> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = node;
+            node.next = node;
+            node.segment = null;
+            size--;
+        }
+
+        void clear() {
+            head.next = head;
+            head.prev = head;
+            size = 0;
+        }
+    }
+
+    /**
+     * Entry of one of the lists.
+     */
+    private static final class Node<K> {
+        final K key;
+        Node<K> prev = this;
+        Node<K> next = this;
+        Segment<K> segment;
+        // Returned as a victim, becomes a ghost when removed
+        boolean evicting;
+        // Miss of this ghost has already adapted target size
+        boolean adapted;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package ycache.eviction;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wrapper which records element accesses into striped ring buffers instead of
+ * notifying underlying strategy on every get. Buffers are drained in batches under
+ * a single lock, which is only tried by readers, so gets never wait for each other.
+ * Buffers are lossy: if a buffer is full, access is dropped, which keeps the
+ * algorithm approximately correct. Misses are as frequent as gets, so they are
+ * passed to underlying strategy only if the lock is free and dropped otherwise.
+ * Other notifications drain buffers first and are passed to underlying strategy immediately.
+ * <p>
+ * Usage: {@code new SimpleCache<K,V>(size, new BufferedEviction<K>(new LRUEviction<K>(size)))}.
+ * @version 1.0
+ */
+public class BufferedEviction<K> implements EvictionStrategy<K> {
+
+    // Number of accesses each buffer may hold, power of two
+    private static final int BUFFER_SIZE = 16;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+    private final EvictionStrategy<K> strategy;
+    private final ReadBuffer<K>[] buffers;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Constructor with number of buffers derived from number of processors.
+     *
+     * @param strategy Underlying eviction strategy
+     */
+    public BufferedEviction(EvictionStrategy<K> strategy) {
+        this(strategy, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor that supports specifying number of buffers.
+     *
+     * @param strategy Underlying eviction strategy
+     * @param stripes Number of buffers, rounded up to power of two
+     */
+    @SuppressWarnings("unchecked")
+    public BufferedEviction(EvictionStrategy<K> strategy, int stripes) {
+        if (stripes <= 0) throw new IllegalArgumentException("Number of buffers should be positive: " + stripes);
+        this.strategy = strategy;
+        int count = Integer.highestOneBit(stripes);
+        if (count < stripes) count <<= 1;
+        this.buffers = (ReadBuffer<K>[]) new ReadBuffer<?>[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = new ReadBuffer<K>();
+        }
+    }
+
+    /**
+     * Called by cache to notify about closing.
+     */
+    @Override
+    public void notifyClear() {
+        lock.lock();
+        try {
+            drain();
+            strategy.notifyClear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by cache to notify about new element.
+     *
+     * @param key Key of new element
+     */
+    @Override
+    public void notifyPut(K key) {
+        lock.lock();
+        try {
+            drain();
+            strategy.notifyPut(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by cache to notify about accessing element.
+     * Access is only recorded, it reaches underlying strategy when buffer is full.
+     *
+     * @param key
+     */
+    @Override
+    public void notifyGet(K key) {
+        ReadBuffer<K> buffer = buffers[stripe()];
+        if (!buffer.offer(key) && lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Called by cache to notify about missing element.
+     * Miss is dropped if another thread holds the lock, buffers are not drained.
+     *
+     * @param key Key of missing element
+     */
+    @Override
+    public void notifyMiss(K key) {
+        if (lock.tryLock()) {
+            try {
+                strategy.notifyMiss(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Called by cache to notify about removing element.
+     *
+     * @param key
+     */
+    @Override
+    public void notifyRemove(K key) {
+        lock.lock();
+        try {
+            drain();
+            strategy.notifyRemove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by cache to notify about batch of new elements.
+     *
+     * @param keys Keys of new elements
+     */
+    @Override
+    public void notifyPutAll(Collection<? extends K> keys) {
+        lock.lock();
+        try {
+            drain();
+            strategy.notifyPutAll(keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by cache to notify about accessing batch of elements.
+     * Unlike single access, batch is passed to underlying strategy at once.
+     *
+     * @param keys Keys of accessed elements
+     */
+    @Override
+    public void notifyGetAll(Collection<? extends K> keys) {
+        lock.lock();
+        try {
+            drain();
+            strategy.notifyGetAll(keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by cache to notify about removing batch of elements.
+     *
+     * @param keys Keys of removed elements
+     */
+    @Override
+    public void notifyRemoveAll(Collection<? extends K> keys) {
+        lock.lock();
+        try {
+            drain();
+            strategy.notifyRemoveAll(keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by cache before new element is put to a full cache.
+     *
+     * @param key Key of new element
+     * @return true if element should be cached, false otherwise
+     */
+    @Override
+    public boolean admit(K key) {
+        lock.lock();
+        try {
+            drain();
+            return strategy.admit(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns tracked keys in order of underlying strategy.
+     *
+     * @return Keys in eviction order, reversed, or null if order is unknown
+     */
+    @Override
+    public List<K> ranking() {
+        lock.lock();
+        try {
+            drain();
+            return strategy.ranking();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns next elements to be removed according to underlying algorithm.
+     *
+     * @return Collection of keys
+     */
+    @Override
+    public Collection<K> nextVictims(int count) {
+        lock.lock();
+        try {
+            drain();
+            return strategy.nextVictims(count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes recorded accesses to underlying strategy. Should be called under lock.
+     */
+    private void drain() {
+        for (ReadBuffer<K> buffer : buffers) {
+            buffer.drainTo(strategy);
+        }
+    }
+
+    private int stripe() {
+        int h = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (buffers.length - 1);
+    }
+
+    /**
+     * Bounded ring buffer of accesses: many writers, single reader.
+     */
+    private static final class ReadBuffer<K> {
+        private final AtomicReferenceArray<K> elements = new AtomicReferenceArray<K>(BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        // Written only by reader under lock
+        private volatile long readCounter = 0;
+
+        /**
+         * Records access, returns false if buffer is full and access was dropped.
+         */
+        boolean offer(K key) {
+            long tail = writeCounter.get();
+            if (tail - readCounter >= BUFFER_SIZE) return false;
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                elements.lazySet((int) (tail & BUFFER_MASK), key);
+            }
+            // Lost race with another writer, access is dropped
+            return true;
+        }
+
+        void drainTo(EvictionStrategy<K> strategy) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & BUFFER_MASK);
+                K key = elements.get(index);
+                // Writer has not published element yet
+                if (key == null) break;
+                elements.lazySet(index, null);
+                strategy.notifyGet(key);
+            }
+            readCounter = head;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package ycache.eviction;
 
 import java.util.Collection;
+import java.util.List;
 
 /**
  * This interface defines algorithm for cache elements eviction.
@@ -32,6 +33,64 @@ public interface EvictionStrategy<K> {
      */
     void notifyRemove(K key);
 
+    /**
+     * Called by cache to notify about accessing element which is not cached.
+     * Strategies which keep history of evicted keys may use it, others ignore it.
+     * @param key Key of missing element
+     */
+    default void notifyMiss(K key) {
+    }
+
+    /**
+     * Called by cache to notify about batch of new elements.
+     * By default notifies about them one by one, strategies may override it to lock once per batch.
+     * @param keys Keys of new elements
+     */
+    default void notifyPutAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyPut(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about accessing batch of elements.
+     * @param keys Keys of accessed elements
+     */
+    default void notifyGetAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyGet(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about removing batch of elements.
+     * @param keys Keys of removed elements
+     */
+    default void notifyRemoveAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyRemove(key);
+        }
+    }
+
+    /**
+     * Called by cache before new element is put to a full cache, i.e. when putting it forces eviction.
+     * Strategy may reject the element to protect more valuable ones. Rejected element is not cached.
+     * @param key Key of new element
+     * @return true if element should be cached, false otherwise
+     */
+    default boolean admit(K key) {
+        return true;
+    }
+
+    /**
+     * Returns tracked keys from the most valuable one, which would be evicted last, to the next victim.
+     * Doesn't change state of strategy, e.g. to save cache in order of value.
+     * @return Keys in eviction order, reversed, or null if strategy has no order
+     */
+    default List<K> ranking() {
+        return null;
+    }
+
     /**
      * Returns next elements to be removed according to this algorithm (LRU, LFU...).
      * @return Collection of keys
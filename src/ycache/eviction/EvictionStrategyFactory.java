@@ -0,0 +1,16 @@
+package ycache.eviction;
+
+/**
+ * Creates eviction strategy instances, for caches which consist of several parts
+ * with independent eviction.
+ * @version 1.0
+ */
+public interface EvictionStrategyFactory<K> {
+
+    /**
+     * Creates new eviction strategy.
+     * @param cacheSize Max size of cache part which will use this strategy
+     * @return New strategy instance
+     */
+    EvictionStrategy<K> create(int cacheSize);
+}
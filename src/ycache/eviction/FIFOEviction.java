@@ -2,28 +2,30 @@ package ycache.eviction;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
 
 /**
  * FIFO algorithm for cache elements eviction.
+ * Keys are kept in insertion order in a linked hash set, so removing any key costs O(1).
  * @author Roman Voropaev
  * @version 1.0
  */
 public class FIFOEviction<K> implements EvictionStrategy<K> {
 
-    private Queue<K> queue;
+    private final LinkedHashSet<K> queue;
 
     public FIFOEviction(int cacheSize) {
-        this.queue = new ArrayBlockingQueue<K>(cacheSize);
+        this.queue = new LinkedHashSet<K>(cacheSize);
     }
 
     /**
      * Called by cache to notify about closing.
      */
     @Override
-    public void notifyClear() {
+    public synchronized void notifyClear() {
         queue.clear();
     }
 
@@ -33,8 +35,8 @@ public class FIFOEviction<K> implements EvictionStrategy<K> {
      * @param key Key of new element
      */
     @Override
-    public void notifyPut(K key) {
-        queue.offer(key);
+    public synchronized void notifyPut(K key) {
+        queue.add(key);
     }
 
     /**
@@ -53,21 +55,69 @@ public class FIFOEviction<K> implements EvictionStrategy<K> {
      * @param key
      */
     @Override
-    public void notifyRemove(K key) {
+    public synchronized void notifyRemove(K key) {
         queue.remove(key);
     }
 
+    /**
+     * Called by cache to notify about batch of new elements, under a single lock.
+     *
+     * @param keys Keys of new elements
+     */
+    @Override
+    public synchronized void notifyPutAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyPut(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about accessing batch of elements.
+     *
+     * @param keys Keys of accessed elements
+     */
+    @Override
+    public void notifyGetAll(Collection<? extends K> keys) {
+        // Nothing to do
+    }
+
+    /**
+     * Called by cache to notify about removing batch of elements, under a single lock.
+     *
+     * @param keys Keys of removed elements
+     */
+    @Override
+    public synchronized void notifyRemoveAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyRemove(key);
+        }
+    }
+
+    /**
+     * Returns tracked keys from the one which would be evicted last to the next victim.
+     *
+     * @return Keys in eviction order, reversed
+     */
+    @Override
+    public synchronized List<K> ranking() {
+        List<K> res = new ArrayList<K>(queue);
+        Collections.reverse(res);
+        return res;
+    }
+
     /**
      * Returns next elements to be removed according to this algorithm (LRU, LFU...).
      *
      * @return Collection of keys
      */
     @Override
-    public Collection nextVictims(int count) {
+    public synchronized Collection<K> nextVictims(int count) {
         if (count > queue.size()) throw new IllegalStateException(count+" elements can't be evicted");
         List<K> res = new ArrayList<K>(count);
+        Iterator<K> it = queue.iterator();
         for (int i = 0; i < count; i++) {
-            res.add(queue.poll());
+            res.add(it.next());
+            it.remove();
         }
         return res;
     }
@@ -0,0 +1,94 @@
+package ycache.eviction;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch with 4-bit counters, estimates access frequency of keys.
+ * Every {@code long} in the table holds 16 counters, each key is counted in 4 of them.
+ * Counters are halved once number of increments reaches sample size, so old
+ * accesses fade out. Table takes about 8 bytes per cached element.
+ * Not thread-safe, callers must synchronize.
+ * @version 1.0
+ */
+final class FrequencySketch<K> {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    // Number of increments between resets
+    private final int sampleSize;
+    private int additions = 0;
+
+    FrequencySketch(int cacheSize) {
+        int size = Integer.highestOneBit(Math.max(cacheSize, 2) - 1) << 1;
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = 10 * Math.max(cacheSize, 1);
+    }
+
+    /**
+     * Returns estimated number of accesses of key, at most 15.
+     */
+    int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int freq = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int shift = (start + i) << 2;
+            int count = (int) ((table[indexOf(hash, i)] >>> shift) & 0xfL);
+            freq = Math.min(freq, count);
+        }
+        return freq;
+    }
+
+    /**
+     * Records access of key.
+     */
+    void increment(K key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int shift = (start + i) << 2;
+            if (((table[index] >>> shift) & 0xfL) != MAX_COUNT) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Forgets all recorded accesses.
+     */
+    void clear() {
+        Arrays.fill(table, 0L);
+        additions = 0;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = additions >>> 1;
+    }
+
+    private int indexOf(int hash, int depth) {
+        long h = (hash + SEEDS[depth]) * SEEDS[depth];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
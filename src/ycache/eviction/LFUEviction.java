@@ -1,32 +1,59 @@
 package ycache.eviction;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * LFU algorithm for cache elements eviction.
+ * Keys are grouped into buckets of equal access frequency, buckets are kept
+ * in a list ordered by frequency, so every notification and each returned
+ * victim costs O(1). Keys with equal frequency are evicted in insertion order.
+ * <p>
+ * Optionally counters may be aged: after every {@code agingPeriod} accesses all
+ * frequencies are halved, so keys which were hot long ago can drop out.
  * @author Roman Voropaev
  * @version 1.0
  */
 public class LFUEviction<K> implements EvictionStrategy<K> {
 
-    private Map<K,AtomicLong> lookup;
+    private final Map<K,Node<K>> lookup;
+
+    // Sentinel of bucket list: head.next has the lowest frequency.
+    private final Bucket<K> head = new Bucket<K>(-1);
+
+    // Number of accesses between counter aging, 0 disables aging
+    private final long agingPeriod;
+    // Accesses since last aging
+    private long accesses = 0;
 
     public LFUEviction(int cacheSize) {
-        this.lookup = new ConcurrentHashMap<K, AtomicLong>(cacheSize);
+        this(cacheSize, 0);
     }
 
     public LFUEviction() {
-        this.lookup = new ConcurrentHashMap<K, AtomicLong>();
+        this(16, 0);
+    }
+
+    /**
+     * Constructor that enables periodic counter aging.
+     *
+     * @param cacheSize Expected number of keys
+     * @param agingPeriod Number of accesses after which all counters are halved, 0 to disable aging
+     */
+    public LFUEviction(int cacheSize, long agingPeriod) {
+        if (agingPeriod < 0) throw new IllegalArgumentException("Aging period can't be negative: " + agingPeriod);
+        this.lookup = new HashMap<K, Node<K>>(cacheSize);
+        this.agingPeriod = agingPeriod;
     }
 
     /**
      * Called by cache to notify about closing.
      */
     @Override
-    public void notifyClear() {
+    public synchronized void notifyClear() {
         lookup.clear();
+        head.next = head;
+        head.prev = head;
+        accesses = 0;
     }
 
     /**
@@ -35,8 +62,17 @@ public class LFUEviction<K> implements EvictionStrategy<K> {
      * @param key Key of new element
      */
     @Override
-    public void notifyPut(K key) {
-        lookup.put(key, new AtomicLong(0));
+    public synchronized void notifyPut(K key) {
+        Node<K> node = lookup.get(key);
+        if (node != null) {
+            Bucket<K> bucket = node.bucket;
+            node.unlink();
+            if (bucket.isEmpty()) bucket.unlink();
+        } else {
+            node = new Node<K>(key);
+            lookup.put(key, node);
+        }
+        bucketAfter(head, 0).append(node);
     }
 
     /**
@@ -45,10 +81,18 @@ public class LFUEviction<K> implements EvictionStrategy<K> {
      * @param key
      */
     @Override
-    public void notifyGet(K key) {
-        AtomicLong touches = lookup.get(key);
-        assert touches != null;
-        touches.incrementAndGet();
+    public synchronized void notifyGet(K key) {
+        Node<K> node = lookup.get(key);
+        if (node == null) return;
+        Bucket<K> bucket = node.bucket;
+        node.unlink();
+        bucketAfter(bucket, bucket.freq + 1).append(node);
+        if (bucket.isEmpty()) bucket.unlink();
+
+        if (agingPeriod > 0 && ++accesses >= agingPeriod) {
+            age();
+            accesses = 0;
+        }
     }
 
     /**
@@ -57,8 +101,64 @@ public class LFUEviction<K> implements EvictionStrategy<K> {
      * @param key
      */
     @Override
-    public void notifyRemove(K key) {
-        lookup.remove(key);
+    public synchronized void notifyRemove(K key) {
+        Node<K> node = lookup.remove(key);
+        if (node == null) return;
+        Bucket<K> bucket = node.bucket;
+        node.unlink();
+        if (bucket.isEmpty()) bucket.unlink();
+    }
+
+    /**
+     * Called by cache to notify about batch of new elements, under a single lock.
+     *
+     * @param keys Keys of new elements
+     */
+    @Override
+    public synchronized void notifyPutAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyPut(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about accessing batch of elements, under a single lock.
+     *
+     * @param keys Keys of accessed elements
+     */
+    @Override
+    public synchronized void notifyGetAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyGet(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about removing batch of elements, under a single lock.
+     *
+     * @param keys Keys of removed elements
+     */
+    @Override
+    public synchronized void notifyRemoveAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyRemove(key);
+        }
+    }
+
+    /**
+     * Returns tracked keys from the one which would be evicted last to the next victim.
+     *
+     * @return Keys in eviction order, reversed
+     */
+    @Override
+    public synchronized List<K> ranking() {
+        List<K> res = new ArrayList<K>(lookup.size());
+        for (Bucket<K> bucket = head.prev; bucket != head; bucket = bucket.prev) {
+            for (Node<K> node = bucket.nodes.prev; node != bucket.nodes; node = node.prev) {
+                res.add(node.key);
+            }
+        }
+        return res;
     }
 
     /**
@@ -67,24 +167,105 @@ public class LFUEviction<K> implements EvictionStrategy<K> {
      * @return Collection of keys
      */
     @Override
-    public Collection<K> nextVictims(int count) {
+    public synchronized Collection<K> nextVictims(int count) {
         if (count > lookup.size()) throw new IllegalStateException(count+" elements can't be evicted");
         List<K> res = new ArrayList<K>(count);
-        Map.Entry<K,AtomicLong>[] entries = new Map.Entry[0];
-        entries = lookup.entrySet().toArray(entries);
-        Arrays.sort(entries, new Comparator<Map.Entry<K, AtomicLong>>() {
-            @Override
-            public int compare(Map.Entry<K, AtomicLong> o1, Map.Entry<K, AtomicLong> o2) {
-                long v1 = o1.getValue().get();
-                long v2 = o2.getValue().get();
-                return v1<v2? -1 : v1>v2? 1 : 0;
+        for (Bucket<K> bucket = head.next; res.size() < count; bucket = bucket.next) {
+            for (Node<K> node = bucket.nodes.next; node != bucket.nodes && res.size() < count; node = node.next) {
+                res.add(node.key);
             }
-        });
-
-        for (int i = 0; i < count; i++) {
-            res.add(entries[i].getKey());
         }
         return res;
+    }
+
+    /**
+     * Returns bucket with given frequency, following {@code pos}. Creates it if needed.
+     */
+    private Bucket<K> bucketAfter(Bucket<K> pos, long freq) {
+        if (pos.next != head && pos.next.freq == freq) return pos.next;
+        Bucket<K> bucket = new Bucket<K>(freq);
+        bucket.linkAfter(pos);
+        return bucket;
+    }
+
+    /**
+     * Halves all counters. Order of keys is preserved, so buckets are rebuilt in a single pass.
+     */
+    private void age() {
+        Bucket<K> oldFirst = head.next;
+        head.next = head;
+        head.prev = head;
+        for (Bucket<K> bucket = oldFirst; bucket != head; ) {
+            Bucket<K> nextBucket = bucket.next;
+            long freq = bucket.freq >>> 1;
+            for (Node<K> node = bucket.nodes.next; node != bucket.nodes; ) {
+                Node<K> nextNode = node.next;
+                node.unlink();
+                Bucket<K> last = head.prev;
+                (last != head && last.freq == freq ? last : bucketAfter(last, freq)).append(node);
+                node = nextNode;
+            }
+            bucket = nextBucket;
+        }
+    }
+
+    /**
+     * Group of keys with the same access frequency.
+     */
+    private static final class Bucket<K> {
+        final long freq;
+        // Sentinel of keys list, oldest key is first
+        final Node<K> nodes = new Node<K>(null);
+        Bucket<K> prev = this;
+        Bucket<K> next = this;
+
+        Bucket(long freq) {
+            this.freq = freq;
+        }
+
+        boolean isEmpty() {
+            return nodes.next == nodes;
+        }
+
+        void append(Node<K> node) {
+            node.bucket = this;
+            node.prev = nodes.prev;
+            node.next = nodes;
+            nodes.prev.next = node;
+            nodes.prev = node;
+        }
+
+        void linkAfter(Bucket<K> pos) {
+            prev = pos;
+            next = pos.next;
+            pos.next.prev = this;
+            pos.next = this;
+        }
 
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+        }
+    }
+
+    /**
+     * Key entry in frequency bucket.
+     */
+    private static final class Node<K> {
+        final K key;
+        Bucket<K> bucket;
+        Node<K> prev = this;
+        Node<K> next = this;
+
+        Node(K key) {
+            this.key = key;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
     }
 }
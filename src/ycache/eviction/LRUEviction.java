@@ -1,32 +1,38 @@
 package ycache.eviction;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * LRU algorithm for cache elements eviction.
+ * Keys are kept in an intrusive doubly-linked list ordered by access,
+ * so every notification and each returned victim costs O(1).
  * @author Roman Voropaev
  * @version 1.0
  */
 public class LRUEviction<K> implements EvictionStrategy<K> {
 
-    private Map<K,AtomicLong> lookup;
+    private final Map<K,Node<K>> lookup;
+
+    // Sentinel of access-order list: head.next is the most recently used key,
+    // head.prev is the least recently used one.
+    private final Node<K> head = new Node<K>(null);
 
     public LRUEviction(int cacheSize) {
-        this.lookup = new ConcurrentHashMap<K, AtomicLong>(cacheSize);
+        this.lookup = new HashMap<K, Node<K>>(cacheSize);
     }
 
     public LRUEviction() {
-        this.lookup = new ConcurrentHashMap<K, AtomicLong>();
+        this.lookup = new HashMap<K, Node<K>>();
     }
 
     /**
      * Called by cache to notify about closing.
      */
     @Override
-    public void notifyClear() {
+    public synchronized void notifyClear() {
         lookup.clear();
+        head.next = head;
+        head.prev = head;
     }
 
     /**
@@ -35,8 +41,15 @@ public class LRUEviction<K> implements EvictionStrategy<K> {
      * @param key Key of new element
      */
     @Override
-    public void notifyPut(K key) {
-        lookup.put(key, new AtomicLong(System.currentTimeMillis()));
+    public synchronized void notifyPut(K key) {
+        Node<K> node = lookup.get(key);
+        if (node == null) {
+            node = new Node<K>(key);
+            lookup.put(key, node);
+        } else {
+            node.unlink();
+        }
+        node.linkAfter(head);
     }
 
     /**
@@ -45,10 +58,11 @@ public class LRUEviction<K> implements EvictionStrategy<K> {
      * @param key
      */
     @Override
-    public void notifyGet(K key) {
-        AtomicLong touches = lookup.get(key);
-        assert touches != null;
-        touches.set(System.currentTimeMillis());
+    public synchronized void notifyGet(K key) {
+        Node<K> node = lookup.get(key);
+        if (node == null) return;
+        node.unlink();
+        node.linkAfter(head);
     }
 
     /**
@@ -57,8 +71,59 @@ public class LRUEviction<K> implements EvictionStrategy<K> {
      * @param key
      */
     @Override
-    public void notifyRemove(K key) {
-        lookup.remove(key);
+    public synchronized void notifyRemove(K key) {
+        Node<K> node = lookup.remove(key);
+        if (node != null) node.unlink();
+    }
+
+    /**
+     * Called by cache to notify about batch of new elements, under a single lock.
+     *
+     * @param keys Keys of new elements
+     */
+    @Override
+    public synchronized void notifyPutAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyPut(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about accessing batch of elements, under a single lock.
+     *
+     * @param keys Keys of accessed elements
+     */
+    @Override
+    public synchronized void notifyGetAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyGet(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about removing batch of elements, under a single lock.
+     *
+     * @param keys Keys of removed elements
+     */
+    @Override
+    public synchronized void notifyRemoveAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyRemove(key);
+        }
+    }
+
+    /**
+     * Returns tracked keys from the one which would be evicted last to the next victim.
+     *
+     * @return Keys in eviction order, reversed
+     */
+    @Override
+    public synchronized List<K> ranking() {
+        List<K> res = new ArrayList<K>(lookup.size());
+        for (Node<K> node = head.next; node != head; node = node.next) {
+            res.add(node.key);
+        }
+        return res;
     }
 
     /**
@@ -67,25 +132,41 @@ public class LRUEviction<K> implements EvictionStrategy<K> {
      * @return Collection of keys
      */
     @Override
-    public Collection<K> nextVictims(int count) {
+    public synchronized Collection<K> nextVictims(int count) {
         if (count > lookup.size()) throw new IllegalStateException(count+" elements can't be evicted");
         List<K> res = new ArrayList<K>(count);
-        Map.Entry<K,AtomicLong>[] entries = new Map.Entry[0];
-        entries = lookup.entrySet().toArray(entries);
-        Arrays.sort(entries, new Comparator<Map.Entry<K, AtomicLong>>() {
-            @Override
-            public int compare(Map.Entry<K, AtomicLong> o1, Map.Entry<K, AtomicLong> o2) {
-                long v1 = o1.getValue().get();
-                long v2 = o2.getValue().get();
-                return v1<v2? -1 : v1>v2? 1 : 0;
-            }
-        });
-
+        Node<K> node = head.prev;
         for (int i = 0; i < count; i++) {
-            res.add(entries[i].getKey());
+            res.add(node.key);
+            node = node.prev;
         }
         return res;
-
     }
 
+    /**
+     * Entry of access-order list.
+     */
+    private static final class Node<K> {
+        final K key;
+        Node<K> prev = this;
+        Node<K> next = this;
+
+        Node(K key) {
+            this.key = key;
+        }
+
+        void linkAfter(Node<K> pos) {
+            prev = pos;
+            next = pos.next;
+            pos.next.prev = this;
+            pos.next = this;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+    }
 }
@@ -4,23 +4,29 @@ import java.util.*;
 
 /**
  * This algorithm randomly chooses elements for eviction.
+ * Keys are kept in an array together with their positions, removed key is
+ * replaced by the last one, so every operation costs O(1).
  *
  * @author Roman Voropaev
  */
 public class RandomEviction<K> implements EvictionStrategy<K> {
 
-    private List<K> keys;
+    private final List<K> keys;
+    private final Map<K,Integer> positions;
+    private final Random rnd = new Random();
 
     public RandomEviction(int cacheSize) {
         this.keys = new ArrayList<K>(cacheSize);
+        this.positions = new HashMap<K, Integer>(cacheSize);
     }
 
     /**
      * Called by cache to notify about closing.
      */
     @Override
-    public void notifyClear() {
+    public synchronized void notifyClear() {
         keys.clear();
+        positions.clear();
     }
 
     /**
@@ -29,7 +35,9 @@ public class RandomEviction<K> implements EvictionStrategy<K> {
      * @param key Key of new element
      */
     @Override
-    public void notifyPut(K key) {
+    public synchronized void notifyPut(K key) {
+        if (positions.containsKey(key)) return;
+        positions.put(key, keys.size());
         keys.add(key);
     }
 
@@ -49,8 +57,48 @@ public class RandomEviction<K> implements EvictionStrategy<K> {
      * @param key
      */
     @Override
-    public void notifyRemove(K key) {
-        keys.remove(key);
+    public synchronized void notifyRemove(K key) {
+        Integer pos = positions.remove(key);
+        if (pos == null) return;
+        K last = keys.remove(keys.size() - 1);
+        if (pos < keys.size()) {
+            keys.set(pos, last);
+            positions.put(last, pos);
+        }
+    }
+
+    /**
+     * Called by cache to notify about batch of new elements, under a single lock.
+     *
+     * @param keys Keys of new elements
+     */
+    @Override
+    public synchronized void notifyPutAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyPut(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about accessing batch of elements.
+     *
+     * @param keys Keys of accessed elements
+     */
+    @Override
+    public void notifyGetAll(Collection<? extends K> keys) {
+        // Nothing to do
+    }
+
+    /**
+     * Called by cache to notify about removing batch of elements, under a single lock.
+     *
+     * @param keys Keys of removed elements
+     */
+    @Override
+    public synchronized void notifyRemoveAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyRemove(key);
+        }
     }
 
     /**
@@ -59,20 +107,22 @@ public class RandomEviction<K> implements EvictionStrategy<K> {
      * @return Collection of keys
      */
     @Override
-    public Collection nextVictims(int count) {
+    public synchronized Collection<K> nextVictims(int count) {
         if (count > keys.size()) throw new IllegalStateException(count+" elements can't be evicted");
-        int m = count;
-        Random rnd = new Random();
-        // Floyd algorithm O(m)
+        // Partial Fisher-Yates shuffle: chosen keys are swapped to the end, O(count)
         List<K> res = new ArrayList<K>(count);
         int n = keys.size();
-        for(int i = n-m; i<n; i++){
-            int pos = rnd.nextInt(i+1);
+        for (int i = n - 1; i >= n - count; i--) {
+            int pos = rnd.nextInt(i + 1);
             K item = keys.get(pos);
-            if (res.contains(item))
-                res.add(keys.get(i));
-            else
-                res.add(item);
+            if (pos != i) {
+                K tail = keys.get(i);
+                keys.set(pos, tail);
+                positions.put(tail, pos);
+                keys.set(i, item);
+                positions.put(item, i);
+            }
+            res.add(item);
         }
         return res;
     }
@@ -0,0 +1,312 @@
+package ycache.eviction;
+
+import java.util.*;
+
+/**
+ * W-TinyLFU algorithm for cache elements eviction.
+ * New elements enter small LRU admission window. Element pushed out of window
+ * is a candidate for main region, which is segmented LRU (probation and protected parts).
+ * On eviction candidate competes with the main region victim: the one
+ * which was accessed less often according to {@link FrequencySketch} is evicted.
+ * So keys accessed only once (e.g. by scans) don't push out hot working set.
+ * <p>
+ * With zero window every new element competes with the victim directly and
+ * may be rejected by {@link #admit(Object)}.
+ * @version 1.0
+ */
+public class WTinyLFUEviction<K> implements EvictionStrategy<K> {
+
+    // Default size of admission window, percent of cache size
+    private static final int DEFAULT_WINDOW_PERCENT = 1;
+    // Size of protected segment, percent of main region
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final Map<K,Node<K>> lookup;
+    private final FrequencySketch<K> sketch;
+
+    private final Segment<K> window;
+    private final Segment<K> probation;
+    private final Segment<K> protectedSegment;
+
+    public WTinyLFUEviction(int cacheSize) {
+        this(cacheSize, DEFAULT_WINDOW_PERCENT);
+    }
+
+    /**
+     * Constructor that supports specifying window size.
+     *
+     * @param cacheSize Max size of cache
+     * @param windowPercent Size of admission window, percent of cache size
+     */
+    public WTinyLFUEviction(int cacheSize, int windowPercent) {
+        if (windowPercent < 0 || windowPercent > 100)
+            throw new IllegalArgumentException("Window size should be within [0,100] percent: " + windowPercent);
+        int windowSize = (int) ((long) cacheSize * windowPercent / 100);
+        if (windowPercent > 0 && windowSize == 0) windowSize = 1;
+        int mainSize = cacheSize - windowSize;
+        this.lookup = new HashMap<K, Node<K>>(cacheSize);
+        this.sketch = new FrequencySketch<K>(cacheSize);
+        this.window = new Segment<K>(windowSize);
+        this.probation = new Segment<K>(mainSize);
+        this.protectedSegment = new Segment<K>((int) ((long) mainSize * PROTECTED_PERCENT / 100));
+    }
+
+    /**
+     * Called by cache to notify about closing.
+     */
+    @Override
+    public synchronized void notifyClear() {
+        lookup.clear();
+        sketch.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    /**
+     * Called by cache to notify about new element.
+     *
+     * @param key Key of new element
+     */
+    @Override
+    public synchronized void notifyPut(K key) {
+        sketch.increment(key);
+        Node<K> node = lookup.get(key);
+        if (node != null) {
+            onHit(node);
+            return;
+        }
+        node = new Node<K>(key);
+        lookup.put(key, node);
+        if (window.capacity == 0) {
+            probation.addFirst(node);
+            return;
+        }
+        window.addFirst(node);
+        // While main region has room, window overflow goes there without competition
+        while (window.size > window.capacity && probation.size + protectedSegment.size < probation.capacity) {
+            Node<K> candidate = window.last();
+            window.remove(candidate);
+            probation.addFirst(candidate);
+        }
+    }
+
+    /**
+     * Called by cache to notify about accessing element.
+     *
+     * @param key
+     */
+    @Override
+    public synchronized void notifyGet(K key) {
+        sketch.increment(key);
+        Node<K> node = lookup.get(key);
+        if (node != null) onHit(node);
+    }
+
+    /**
+     * Called by cache to notify about removing element.
+     *
+     * @param key
+     */
+    @Override
+    public synchronized void notifyRemove(K key) {
+        Node<K> node = lookup.remove(key);
+        if (node != null && node.segment != null) node.segment.remove(node);
+    }
+
+    /**
+     * Called by cache to notify about batch of new elements, under a single lock.
+     *
+     * @param keys Keys of new elements
+     */
+    @Override
+    public synchronized void notifyPutAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyPut(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about accessing batch of elements, under a single lock.
+     *
+     * @param keys Keys of accessed elements
+     */
+    @Override
+    public synchronized void notifyGetAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyGet(key);
+        }
+    }
+
+    /**
+     * Called by cache to notify about removing batch of elements, under a single lock.
+     *
+     * @param keys Keys of removed elements
+     */
+    @Override
+    public synchronized void notifyRemoveAll(Collection<? extends K> keys) {
+        for (K key : keys) {
+            notifyRemove(key);
+        }
+    }
+
+    /**
+     * Called by cache before new element is put to a full cache.
+     * Without window new element competes with main region victim and is
+     * rejected if it is accessed not more often than the victim.
+     *
+     * @param key Key of new element
+     * @return true if element should be cached, false otherwise
+     */
+    @Override
+    public synchronized boolean admit(K key) {
+        if (window.capacity > 0) return true;
+        Node<K> victim = mainVictim();
+        if (victim == null || sketch.frequency(key) > sketch.frequency(victim.key)) return true;
+        // Remember this attempt, so element may win next time
+        sketch.increment(key);
+        return false;
+    }
+
+    /**
+     * Returns tracked keys from the most valuable one to the next victim:
+     * protected segment first, then window, then probation.
+     *
+     * @return Keys in approximate eviction order, reversed
+     */
+    @Override
+    public synchronized List<K> ranking() {
+        List<K> res = new ArrayList<K>(lookup.size());
+        protectedSegment.addTo(res);
+        window.addTo(res);
+        probation.addTo(res);
+        return res;
+    }
+
+    /**
+     * Returns next elements to be removed according to this algorithm (LRU, LFU...).
+     *
+     * @return Collection of keys
+     */
+    @Override
+    public synchronized Collection<K> nextVictims(int count) {
+        if (count > lookup.size()) throw new IllegalStateException(count+" elements can't be evicted");
+        List<K> res = new ArrayList<K>(count);
+        for (int i = 0; i < count; i++) {
+            // Element pushed out of window competes with main region victim.
+            // If window is within its size, latest element admitted to probation competes.
+            Node<K> victim = mainVictim();
+            Node<K> candidate = window.size > window.capacity ? window.last()
+                    : probation.size > 1 ? probation.first() : null;
+            Node<K> loser;
+            if (victim == null) {
+                loser = candidate != null ? candidate : window.last();
+            } else if (candidate == null || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                if (candidate != null && candidate.segment == window) {
+                    window.remove(candidate);
+                    probation.addFirst(candidate);
+                }
+                loser = victim;
+            } else {
+                loser = candidate;
+            }
+            // Nothing left, victims were not removed by cache yet
+            if (loser.segment == null) break;
+            // Victim stays in lookup until cache removes it
+            loser.segment.remove(loser);
+            res.add(loser.key);
+        }
+        return res;
+    }
+
+    private void onHit(Node<K> node) {
+        Segment<K> segment = node.segment;
+        if (segment == null) return;
+        segment.remove(node);
+        if (segment == probation) {
+            protectedSegment.addFirst(node);
+            if (protectedSegment.size > protectedSegment.capacity) {
+                Node<K> demoted = protectedSegment.last();
+                protectedSegment.remove(demoted);
+                probation.addFirst(demoted);
+            }
+        } else {
+            segment.addFirst(node);
+        }
+    }
+
+    private Node<K> mainVictim() {
+        if (probation.size > 0) return probation.last();
+        if (protectedSegment.size > 0) return protectedSegment.last();
+        return null;
+    }
+
+    /**
+     * LRU list of keys, most recently used key is first.
+     */
+    private static final class Segment<K> {
+        final int capacity;
+        final Node<K> head = new Node<K>(null);
+        int size = 0;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        Node<K> first() {
+            return head.next;
+        }
+
+        Node<K> last() {
+            return head.prev;
+        }
+
+        void addFirst(Node<K> node) {
+            link(node, head, head.next);
+        }
+
+        void remove(Node<K> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = node;
+            node.next = node;
+            node.segment = null;
+            size--;
+        }
+
+        void clear() {
+            head.next = head;
+            head.prev = head;
+            size = 0;
+        }
+
+        void addTo(List<K> keys) {
+            for (Node<K> node = head.next; node != head; node = node.next) {
+                keys.add(node.key);
+            }
+        }
+
+        private void link(Node<K> node, Node<K> prev, Node<K> next) {
+            node.prev = prev;
+            node.next = next;
+            prev.next = node;
+            next.prev = node;
+            node.segment = this;
+            size++;
+        }
+    }
+
+    /**
+     * Entry of LRU list.
+     */
+    private static final class Node<K> {
+        final K key;
+        Segment<K> segment;
+        Node<K> prev = this;
+        Node<K> next = this;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+}
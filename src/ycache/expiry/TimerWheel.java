@@ -0,0 +1,254 @@
+package ycache.expiry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical timing wheel which tracks expiration time of cache elements.
+ * Every level is a ring of buckets, buckets of a level cover consecutive time
+ * spans (about a second, a minute, an hour, a day, a week). Element is put to
+ * the bucket of its expiration time at the smallest level which can hold it.
+ * When time moves on, buckets which passed are emptied: expired elements are
+ * returned, others are put to lower levels. So scheduling, cancelling and
+ * expiring an element costs amortized O(1).
+ * <p>
+ * Elements may expire after last access. Access only records time without
+ * locking, so element is moved to its new bucket when its old bucket is emptied.
+ * <p>
+ * Time is in nanoseconds and should not be negative, e.g. time since cache creation.
+ * @version 1.0
+ */
+public class TimerWheel<K> {
+
+    // Number of buckets at every level
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    // Time span of a bucket at every level: 1.07s, 1.14m, 1.22h, 1.63d, 6.5d, 6.5d
+    private static final long[] SPANS = {
+            1L << 30, 1L << 36, 1L << 42, 1L << 47, 1L << 49, 1L << 49};
+    private static final long[] SHIFT = {30, 36, 42, 47, 49};
+
+    private final Node<K>[][] wheel;
+    private final ConcurrentHashMap<K,Node<K>> nodes = new ConcurrentHashMap<K, Node<K>>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Current time of wheel
+    private long nanos = 0;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel() {
+        wheel = (Node<K>[][]) new Node<?>[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = (Node<K>[]) new Node<?>[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = new Node<K>(null, 0, 0, 0);
+            }
+        }
+    }
+
+    /**
+     * Schedules expiration of element, replacing previous one.
+     *
+     * @param key Element key
+     * @param timeToLive Time after which element expires, 0 for no limit
+     * @param timeToIdle Time after last access after which element expires, 0 for no limit
+     * @param now Current time
+     */
+    public void schedule(K key, long timeToLive, long timeToIdle, long now) {
+        if (timeToLive <= 0 && timeToIdle <= 0) {
+            cancel(key);
+            return;
+        }
+        Node<K> node = new Node<K>(key, timeToLive > 0 ? now + timeToLive : Long.MAX_VALUE, timeToIdle, now);
+        lock.lock();
+        try {
+            Node<K> old = nodes.put(key, node);
+            if (old != null) old.unlink();
+            link(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels expiration of element.
+     *
+     * @param key Element key
+     */
+    public void cancel(K key) {
+        if (!nodes.containsKey(key)) return;
+        lock.lock();
+        try {
+            Node<K> node = nodes.remove(key);
+            if (node != null) node.unlink();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records access of element, which postpones its expiration if it has time to idle.
+     *
+     * @param key Element key
+     * @param now Current time
+     */
+    public void touch(K key, long now) {
+        Node<K> node = nodes.get(key);
+        if (node != null && node.timeToIdle > 0) node.accessTime = now;
+    }
+
+    /**
+     * Puts element back to the wheel if it was returned by {@link #advance(long)}
+     * but has not expired after all, e.g. it was accessed meanwhile.
+     * Otherwise it would expire only on access.
+     *
+     * @param key Element key
+     */
+    public void reschedule(K key) {
+        lock.lock();
+        try {
+            Node<K> node = nodes.get(key);
+            if (node != null && node.prev == null) link(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if element has expired.
+     *
+     * @param key Element key
+     * @param now Current time
+     * @return true if element has expired, false if it has not or it never expires
+     */
+    public boolean isExpired(K key, long now) {
+        Node<K> node = nodes.get(key);
+        return node != null && node.deadline() <= now;
+    }
+
+    /**
+     * Moves time of wheel forward and returns elements which have expired.
+     * Expired elements are still tracked until they are cancelled.
+     * If another thread is advancing the wheel, returns nothing.
+     *
+     * @param now Current time
+     * @return Keys of expired elements
+     */
+    public List<K> advance(long now) {
+        if (!lock.tryLock()) return Collections.emptyList();
+        try {
+            List<K> expired = new ArrayList<K>();
+            long previous = nanos;
+            nanos = now;
+            for (int i = 0; i < SHIFT.length; i++) {
+                long previousTicks = previous >>> SHIFT[i];
+                long currentTicks = now >>> SHIFT[i];
+                if (currentTicks - previousTicks <= 0) break;
+                expire(i, previousTicks, currentTicks - previousTicks, expired);
+            }
+            return expired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets all elements.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            nodes.clear();
+            for (Node<K>[] level : wheel) {
+                for (Node<K> sentinel : level) {
+                    sentinel.prev = sentinel;
+                    sentinel.next = sentinel;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Empties buckets of level which time has passed.
+     */
+    private void expire(int level, long previousTicks, long delta, List<K> expired) {
+        Node<K>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(1 + delta, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            Node<K> sentinel = buckets[i & mask];
+            Node<K> node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            while (node != sentinel) {
+                Node<K> next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (node.deadline() <= nanos) {
+                    expired.add(node.key);
+                } else {
+                    link(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Puts node to bucket of its expiration time. Time which has passed is put
+     * to the current bucket, so it is emptied by the next advance.
+     */
+    private void link(Node<K> node) {
+        long deadline = Math.max(node.deadline(), nanos);
+        Node<K> sentinel = wheel[wheel.length - 1][0];
+        long duration = deadline - nanos;
+        for (int i = 0; i < wheel.length - 1; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = deadline >>> SHIFT[i];
+                sentinel = wheel[i][(int) (ticks & (wheel[i].length - 1))];
+                break;
+            }
+        }
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    /**
+     * Expiration time of element, entry of bucket list.
+     */
+    private static final class Node<K> {
+        final K key;
+        final long writeDeadline;
+        final long timeToIdle;
+        volatile long accessTime;
+        Node<K> prev = this;
+        Node<K> next = this;
+
+        Node(K key, long writeDeadline, long timeToIdle, long accessTime) {
+            this.key = key;
+            this.writeDeadline = writeDeadline;
+            this.timeToIdle = timeToIdle;
+            this.accessTime = accessTime;
+        }
+
+        long deadline() {
+            if (timeToIdle <= 0) return writeDeadline;
+            return Math.min(writeDeadline, accessTime + timeToIdle);
+        }
+
+        void unlink() {
+            if (prev == null) return;
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+}
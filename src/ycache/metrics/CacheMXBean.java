@@ -0,0 +1,45 @@
+package ycache.metrics;
+
+/**
+ * Management interface of cache, registered as {@code ycache:type=Cache,name=<name>}.
+ * Latencies are in nanoseconds.
+ *
+ * @version 1.0
+ */
+public interface CacheMXBean {
+
+    String getName();
+
+    /**
+     * @return Class of eviction strategy
+     */
+    String getStrategy();
+
+    long getHits();
+
+    long getMisses();
+
+    long getPuts();
+
+    long getEvictions();
+
+    double getHitRate();
+
+    Histogram.Snapshot getGetLatency();
+
+    Histogram.Snapshot getPutLatency();
+
+    Histogram.Snapshot getRemoveLatency();
+
+    Histogram.Snapshot getFreeLatency();
+
+    /**
+     * @return Durations of eviction passes
+     */
+    Histogram.Snapshot getEvictionTime();
+
+    /**
+     * @return Numbers of elements evicted by one pass
+     */
+    Histogram.Snapshot getEvictionVictims();
+}
@@ -0,0 +1,278 @@
+package ycache.metrics;
+
+import org.apache.log4j.Logger;
+import ycache.CacheStats;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms of cache operations and eviction passes of its strategy.
+ * Metrics are registered as {@link CacheMXBean} and may be pushed to monitoring
+ * systems by {@link MetricsReporter}s, which are called on a daemon thread.
+ * Metrics should be closed when they are not needed anymore.
+ *
+ * @version 1.0
+ */
+public class CacheMetrics {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(CacheMetrics.class);
+
+    /**
+     * Timed operations of cache.
+     */
+    public enum Operation {
+        GET, PUT, REMOVE, FREE
+    }
+
+    private final String name;
+    private final String strategy;
+    private final Supplier<CacheStats> stats;
+
+    // Latencies by operation
+    private final Histogram[] latencies = new Histogram[Operation.values().length];
+    // Duration of eviction passes and number of elements evicted by every pass
+    private final Histogram evictionTime = new Histogram();
+    private final Histogram evictionVictims = new Histogram();
+
+    private final ObjectName objectName;
+    // Thread of reporters, created by the first one
+    private ScheduledExecutorService reporting;
+
+    /**
+     * Constructor.
+     *
+     * @param name Name of cache, unique among registered caches
+     * @param strategy Name of eviction strategy
+     * @param stats Counters of cache
+     */
+    public CacheMetrics(String name, String strategy, Supplier<CacheStats> stats) {
+        this.name = name;
+        this.strategy = strategy;
+        this.stats = stats;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Histogram();
+        }
+        try {
+            this.objectName = new ObjectName("ycache:type=Cache,name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Bad cache name: " + name, e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return Name of MBean of cache
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Records duration of operation.
+     *
+     * @param operation Operation
+     * @param nanos Duration, in nanoseconds
+     */
+    public void record(Operation operation, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records eviction pass.
+     *
+     * @param nanos Duration, in nanoseconds
+     * @param victims Number of evicted elements
+     */
+    public void recordEviction(long nanos, int victims) {
+        evictionTime.record(nanos);
+        evictionVictims.record(victims);
+    }
+
+    /**
+     * @return Latencies of operation, in nanoseconds
+     */
+    public Histogram.Snapshot latency(Operation operation) {
+        return latencies[operation.ordinal()].snapshot();
+    }
+
+    /**
+     * @return Durations of eviction passes, in nanoseconds
+     */
+    public Histogram.Snapshot evictionTime() {
+        return evictionTime.snapshot();
+    }
+
+    /**
+     * @return Numbers of elements evicted by one pass
+     */
+    public Histogram.Snapshot evictionVictims() {
+        return evictionVictims.snapshot();
+    }
+
+    /**
+     * @return Counters of cache
+     */
+    public CacheStats stats() {
+        return stats.get();
+    }
+
+    /**
+     * Registers MBean of cache in platform MBean server.
+     *
+     * @throws IllegalStateException if cache with the same name is registered
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException("Cache " + name + " is already registered", e);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cache " + name + " can't be registered", e);
+        }
+    }
+
+    /**
+     * Calls reporter periodically, starting after the first period.
+     *
+     * @param reporter Reporter
+     * @param period Period of reports
+     * @param unit Unit of period
+     */
+    public synchronized void addReporter(final MetricsReporter reporter, long period, TimeUnit unit) {
+        if (reporting == null) {
+            reporting = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ycache-metrics-" + name);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        reporting.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reporter.report(CacheMetrics.this, stats());
+                } catch (Throwable e) {
+                    // Otherwise the next reports would be cancelled
+                    LOG.warn("Metrics of cache " + name + " can't be reported", e);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops reporters and unregisters MBean, if it was registered.
+     */
+    public synchronized void close() {
+        if (reporting != null) {
+            reporting.shutdownNow();
+            reporting = null;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            // Not registered
+        } catch (JMException e) {
+            LOG.warn("Cache " + name + " can't be unregistered", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheMetrics(name=%s,strategy=%s,get=%s,put=%s,remove=%s,free=%s,evictionTime=%s,evictionVictims=%s)",
+                name, strategy, latency(Operation.GET), latency(Operation.PUT), latency(Operation.REMOVE),
+                latency(Operation.FREE), evictionTime(), evictionVictims());
+    }
+
+    /**
+     * MBean of cache, separate so that recording methods are not exposed.
+     */
+    private final class MXBean implements CacheMXBean {
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getStrategy() {
+            return strategy;
+        }
+
+        @Override
+        public long getHits() {
+            return stats().getHitCount();
+        }
+
+        @Override
+        public long getMisses() {
+            return stats().getMissCount();
+        }
+
+        @Override
+        public long getPuts() {
+            return stats().getPutCount();
+        }
+
+        @Override
+        public long getEvictions() {
+            return stats().getEvictionCount();
+        }
+
+        @Override
+        public double getHitRate() {
+            return stats().hitRate();
+        }
+
+        @Override
+        public Histogram.Snapshot getGetLatency() {
+            return latency(Operation.GET);
+        }
+
+        @Override
+        public Histogram.Snapshot getPutLatency() {
+            return latency(Operation.PUT);
+        }
+
+        @Override
+        public Histogram.Snapshot getRemoveLatency() {
+            return latency(Operation.REMOVE);
+        }
+
+        @Override
+        public Histogram.Snapshot getFreeLatency() {
+            return latency(Operation.FREE);
+        }
+
+        @Override
+        public Histogram.Snapshot getEvictionTime() {
+            return evictionTime();
+        }
+
+        @Override
+        public Histogram.Snapshot getEvictionVictims() {
+            return evictionVictims();
+        }
+    }
+}
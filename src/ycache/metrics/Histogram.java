@@ -0,0 +1,169 @@
+package ycache.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Log-linear histogram of non-negative values, e.g. latencies in nanoseconds.
+ * Every power of two is split into 16 linear buckets, so percentiles are off by less than 6.25%
+ * whatever the magnitude, and recording is an index computation and an increment.
+ * Values above 2^40 (about 18 minutes in nanoseconds) are recorded as 2^40.
+ * <p>
+ * Counts are striped by thread, so concurrent recording threads rarely contend.
+ * Snapshots taken during recording may miss the latest values.
+ *
+ * @version 1.0
+ */
+public final class Histogram {
+
+    // Number of linear buckets of every power of two is 2^SUB_BITS
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // Values are tracked up to 2^MAX_BITS - 1
+    private static final int MAX_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_COUNT;
+
+    private static final int STRIPES = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+
+    // Counts of buckets, every thread updates one stripe
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(long a, long b) {
+            return Math.max(a, b);
+        }
+    }, 0);
+
+    public Histogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * Records value, negative values are recorded as 0.
+     *
+     * @param value Value
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        else if (value > MAX_VALUE) value = MAX_VALUE;
+        stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)].incrementAndGet(index(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return Snapshot of recorded values
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = stripe.get(i);
+                counts[i] += c;
+                count += c;
+            }
+        }
+        return new Snapshot(counts, count, sum.sum(), max.get());
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + (int) ((value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1));
+    }
+
+    /**
+     * @return The lowest value recorded to bucket
+     */
+    static long lowest(int index) {
+        if (index < SUB_COUNT) return index;
+        int exp = index / SUB_COUNT + SUB_BITS - 1;
+        return (long) (SUB_COUNT + index % SUB_COUNT) << (exp - SUB_BITS);
+    }
+
+    /**
+     * Immutable snapshot of histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return Number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return Average of recorded values, 0 if there are none
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @return Max recorded value, 0 if there are none
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns value which is not less than given percentage of recorded values,
+         * rounded up to the highest value of its bucket.
+         *
+         * @param percentile Percentile, from 0 to 100
+         * @return Value at percentile, 0 if there are no values
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("Bad percentile: " + percentile);
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(lowest(i + 1) - 1, max);
+            }
+            return max;
+        }
+
+        public long getP50() {
+            return getPercentile(50);
+        }
+
+        public long getP90() {
+            return getPercentile(90);
+        }
+
+        public long getP99() {
+            return getPercentile(99);
+        }
+
+        public long getP999() {
+            return getPercentile(99.9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("(count=%d,mean=%.1f,p50=%d,p90=%d,p99=%d,p999=%d,max=%d)",
+                    count, getMean(), getP50(), getP90(), getP99(), getP999(), max);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ycache.metrics;
+
+import org.apache.log4j.Logger;
+import ycache.CacheStats;
+
+/**
+ * Reporter which writes metrics to log at info level.
+ *
+ * @version 1.0
+ */
+public class LoggingReporter implements MetricsReporter {
+
+    // Logging
+    private final Logger LOG = Logger.getLogger(LoggingReporter.class);
+
+    @Override
+    public void report(CacheMetrics metrics, CacheStats stats) {
+        if (LOG.isInfoEnabled())
+            LOG.info(metrics + " " + stats);
+    }
+}
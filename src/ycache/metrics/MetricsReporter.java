@@ -0,0 +1,21 @@
+package ycache.metrics;
+
+import ycache.CacheStats;
+
+/**
+ * Exporter of cache metrics to a monitoring system, e.g. a log, StatsD or Prometheus.
+ * Reporter is called periodically on the reporting thread of {@link CacheMetrics},
+ * see {@link CacheMetrics#addReporter(MetricsReporter, long, java.util.concurrent.TimeUnit)}.
+ *
+ * @version 1.0
+ */
+public interface MetricsReporter {
+
+    /**
+     * Reports current metrics. Histograms are cumulative since metrics were enabled.
+     *
+     * @param metrics Metrics of cache
+     * @param stats Counters of cache
+     */
+    void report(CacheMetrics metrics, CacheStats stats);
+}
@@ -0,0 +1,247 @@
+package ycache.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Allocates memory chunks in direct (off-heap) buffers.
+ * Memory is reserved in slabs of equal size, every slab is divided into chunks
+ * of one size class. Size classes are powers of two, so chunk wastes less than half
+ * of its space. Freed chunks are reused by the same size class. When all chunks of a slab
+ * are freed, the slab goes back to a shared pool and may be assigned to another size class,
+ * so memory follows changing value sizes. Slabs are never returned to the system.
+ * <p>
+ * Chunk is identified by a handle: slab number in higher 32 bits and offset in lower ones.
+ * Chunk stores length of data followed by data.
+ * Allocation is synchronized. Reads and writes of chunks are not, caller should
+ * make sure the chunk is not freed meanwhile.
+ * @version 1.0
+ */
+public class SlabAllocator {
+
+    // Smallest chunk size
+    public static final int MIN_CHUNK_SIZE = 64;
+    // Default size of slab
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private final int slabSize;
+    private final ByteBuffer[] slabs;
+    private final SizeClass[] classes;
+    // Size class of every reserved slab, -1 if slab is empty
+    private final int[] slabClasses;
+    // Number of allocated chunks of every slab
+    private final int[] liveChunks;
+    // Offsets of freed chunks of every slab
+    private final int[][] freeChunks;
+    private final int[] freeCounts;
+    // Reserved slabs without allocated chunks
+    private final BitSet emptySlabs = new BitSet();
+
+    // Number of reserved slabs
+    private int slabCount = 0;
+    // Bytes in allocated chunks
+    private long usedBytes = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param maxMemory Max number of bytes to reserve
+     * @param slabSize Size of slab, power of two, at least {@link #MIN_CHUNK_SIZE}
+     */
+    public SlabAllocator(long maxMemory, int slabSize) {
+        if (slabSize < MIN_CHUNK_SIZE || Integer.bitCount(slabSize) != 1)
+            throw new IllegalArgumentException("Slab size should be power of two, at least " + MIN_CHUNK_SIZE + ": " + slabSize);
+        if (maxMemory < slabSize)
+            throw new IllegalArgumentException(String.format("Memory size %d is less than slab size %d", maxMemory, slabSize));
+        this.slabSize = slabSize;
+        this.slabs = new ByteBuffer[(int) Math.min(Integer.MAX_VALUE, maxMemory / slabSize)];
+        this.slabClasses = new int[slabs.length];
+        this.liveChunks = new int[slabs.length];
+        this.freeChunks = new int[slabs.length][];
+        this.freeCounts = new int[slabs.length];
+        int classCount = Integer.numberOfTrailingZeros(slabSize) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE) + 1;
+        this.classes = new SizeClass[classCount];
+        for (int i = 0; i < classCount; i++) {
+            classes[i] = new SizeClass(MIN_CHUNK_SIZE << i);
+        }
+    }
+
+    /**
+     * Constructor with default slab size.
+     *
+     * @param maxMemory Max number of bytes to reserve
+     */
+    public SlabAllocator(long maxMemory) {
+        this(maxMemory, (int) Math.min(DEFAULT_SLAB_SIZE, Long.highestOneBit(maxMemory)));
+    }
+
+    /**
+     * Allocates chunk for data of given length.
+     *
+     * @param length Length of data
+     * @return Chunk handle or -1 if there is no free memory
+     */
+    public synchronized long allocate(int length) {
+        int index = classOf(length);
+        SizeClass sizeClass = classes[index];
+        int slab = sizeClass.partialSlabs.nextSetBit(0);
+        int offset;
+        if (slab >= 0) {
+            offset = freeChunks[slab][--freeCounts[slab]];
+            if (freeCounts[slab] == 0) sizeClass.partialSlabs.clear(slab);
+        } else {
+            if (sizeClass.slab < 0 || sizeClass.offset + sizeClass.chunkSize > slabSize) {
+                int empty = emptySlabs.nextSetBit(0);
+                if (empty >= 0) {
+                    emptySlabs.clear(empty);
+                } else {
+                    if (slabCount == slabs.length) return -1;
+                    // Slab may be left from before clear()
+                    if (slabs[slabCount] == null) slabs[slabCount] = ByteBuffer.allocateDirect(slabSize);
+                    empty = slabCount++;
+                }
+                slabClasses[empty] = index;
+                sizeClass.slab = empty;
+                sizeClass.offset = 0;
+            }
+            slab = sizeClass.slab;
+            offset = sizeClass.offset;
+            sizeClass.offset += sizeClass.chunkSize;
+        }
+        liveChunks[slab]++;
+        usedBytes += sizeClass.chunkSize;
+        return ((long) slab << 32) | offset;
+    }
+
+    /**
+     * Returns chunk to allocator. Chunk should contain data written by {@link #write(long, byte[])}.
+     *
+     * @param handle Chunk handle
+     */
+    public synchronized void free(long handle) {
+        int slab = (int) (handle >>> 32);
+        SizeClass sizeClass = classes[slabClasses[slab]];
+        usedBytes -= sizeClass.chunkSize;
+        if (--liveChunks[slab] == 0) {
+            // Empty slab goes back to the pool with its freed chunks
+            sizeClass.partialSlabs.clear(slab);
+            freeCounts[slab] = 0;
+            if (sizeClass.slab == slab) sizeClass.slab = -1;
+            slabClasses[slab] = -1;
+            emptySlabs.set(slab);
+            return;
+        }
+        int[] free = freeChunks[slab];
+        if (free == null || freeCounts[slab] == free.length) {
+            int[] grown = new int[free == null ? 16 : Math.min(free.length * 2, slabSize / sizeClass.chunkSize)];
+            if (free != null) System.arraycopy(free, 0, grown, 0, freeCounts[slab]);
+            freeChunks[slab] = free = grown;
+        }
+        free[freeCounts[slab]++] = (int) handle;
+        sizeClass.partialSlabs.set(slab);
+    }
+
+    /**
+     * Writes data to chunk.
+     *
+     * @param handle Chunk handle
+     * @param data Data, not longer than chunk was allocated for
+     */
+    public void write(long handle, byte[] data) {
+        ByteBuffer buffer = slab(handle);
+        buffer.putInt(data.length);
+        buffer.put(data);
+    }
+
+    /**
+     * Reads data from chunk.
+     *
+     * @param handle Chunk handle
+     * @return Data
+     */
+    public byte[] read(long handle) {
+        ByteBuffer buffer = slab(handle);
+        byte[] data = new byte[buffer.getInt()];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Returns length of data stored in chunk.
+     *
+     * @param handle Chunk handle
+     * @return Length of data
+     */
+    public int length(long handle) {
+        return slabs[(int) (handle >>> 32)].getInt((int) handle);
+    }
+
+    /**
+     * Forgets all allocated chunks. Reserved slabs are kept.
+     */
+    public synchronized void clear() {
+        for (SizeClass sizeClass : classes) {
+            sizeClass.partialSlabs.clear();
+            sizeClass.slab = -1;
+        }
+        for (int i = 0; i < slabCount; i++) {
+            slabClasses[i] = -1;
+            liveChunks[i] = 0;
+            freeCounts[i] = 0;
+        }
+        emptySlabs.clear();
+        // Slabs are reassigned to size classes from the start
+        slabCount = 0;
+        usedBytes = 0;
+    }
+
+    /**
+     * @return Max length of data which may be allocated
+     */
+    public int getMaxLength() {
+        return slabSize - 4;
+    }
+
+    /**
+     * @return Number of bytes in allocated chunks
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return Number of bytes reserved in slabs
+     */
+    public synchronized long getReservedBytes() {
+        return (long) slabCount * slabSize;
+    }
+
+    private ByteBuffer slab(long handle) {
+        ByteBuffer buffer = slabs[(int) (handle >>> 32)].duplicate();
+        buffer.position((int) handle);
+        return buffer;
+    }
+
+    private int classOf(int length) {
+        int size = length + 4;
+        if (length < 0 || size > slabSize) throw new IllegalArgumentException("Data is too large: " + length);
+        if (size <= MIN_CHUNK_SIZE) return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Chunks of one size.
+     */
+    private static final class SizeClass {
+        final int chunkSize;
+        // Slabs with freed chunks
+        final BitSet partialSlabs = new BitSet();
+        // Slab chunks are carved from and offset of next chunk in it
+        int slab = -1;
+        int offset = 0;
+
+        SizeClass(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ycache.serializer;
+
+import java.io.*;
+
+/**
+ * Serializer which uses standard Java serialization.
+ * Objects should implement {@link Serializable}.
+ * @version 1.0
+ */
+public class JavaSerializer<T> implements Serializer<T> {
+
+    /**
+     * Converts object to bytes.
+     *
+     * @param value Object
+     * @return Serialized object
+     */
+    @Override
+    public byte[] serialize(T value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Object can't be serialized: " + value, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores object from bytes.
+     *
+     * @param bytes Serialized object
+     * @return Object
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deserialize(byte[] bytes) {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            return (T) in.readObject();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Object can't be deserialized", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Object can't be deserialized", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ycache.serializer;
+
+/**
+ * Converts objects to bytes and back, for caches which store data outside of the heap.
+ * Implementations should be thread-safe.
+ * @version 1.0
+ */
+public interface Serializer<T> {
+
+    /**
+     * Converts object to bytes.
+     * @param value Object
+     * @return Serialized object
+     */
+    byte[] serialize(T value);
+
+    /**
+     * Restores object from bytes.
+     * @param bytes Serialized object
+     * @return Object
+     */
+    T deserialize(byte[] bytes);
+}
@@ -0,0 +1,116 @@
+package ycache.snapshot;
+
+import ycache.serializer.Serializer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads cache elements from snapshot file written by {@link SnapshotWriter}
+ * through memory-mapped windows, in the order they were written.
+ * <p>
+ * Usage: {@code while (reader.next()) cache.put(reader.getKey(), reader.getValue());}
+ * @version 1.0
+ */
+public class SnapshotReader<K,V> implements Closeable {
+
+    private final FileChannel channel;
+    private final long size;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+
+    // Mapped region and its position in file
+    private MappedByteBuffer buffer;
+    private long base = 0;
+
+    // Current element
+    private K key;
+    private V value;
+
+    /**
+     * Opens snapshot file.
+     *
+     * @param file File
+     * @param keySerializer Serializer of keys
+     * @param valueSerializer Serializer of values
+     * @throws IOException if file can't be read or it is not a snapshot
+     */
+    public SnapshotReader(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        try {
+            this.size = channel.size();
+            ensure(8);
+            if (buffer.getInt() != SnapshotWriter.MAGIC) throw new IOException("Not a cache snapshot: " + file);
+            int version = buffer.getInt();
+            if (version != SnapshotWriter.VERSION) throw new IOException("Unsupported snapshot version: " + version);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads next element.
+     *
+     * @return true if element was read, false if there are no more elements
+     * @throws IOException if snapshot is corrupted
+     */
+    public boolean next() throws IOException {
+        ensure(4);
+        int keyLength = buffer.getInt();
+        if (keyLength == SnapshotWriter.END) {
+            key = null;
+            value = null;
+            return false;
+        }
+        key = keySerializer.deserialize(read(keyLength));
+        ensure(4);
+        value = valueSerializer.deserialize(read(buffer.getInt()));
+        return true;
+    }
+
+    /**
+     * @return Key of current element
+     */
+    public K getKey() {
+        return key;
+    }
+
+    /**
+     * @return Value of current element
+     */
+    public V getValue() {
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private byte[] read(int length) throws IOException {
+        if (length < 0) throw new IOException("Snapshot is corrupted: negative length " + length);
+        ensure(length);
+        byte[] data = new byte[length];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Maps next window if current one has less than {@code length} bytes left.
+     */
+    private void ensure(int length) throws IOException {
+        if (buffer != null && buffer.remaining() >= length) return;
+        if (buffer != null) base += buffer.position();
+        if (base + length > size) throw new EOFException("Snapshot is truncated");
+        long windowSize = Math.min(Math.max(SnapshotWriter.WINDOW, length), size - base);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, windowSize);
+    }
+}
@@ -0,0 +1,147 @@
+package ycache.snapshot;
+
+import ycache.serializer.Serializer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes cache elements to snapshot file through memory-mapped windows.
+ * <p>
+ * Format: magic number and format version, then elements as length-prefixed
+ * serialized key and value, then {@link #END} instead of key length. Numbers are big-endian ints.
+ * Elements are read back in the order they were written.
+ * <p>
+ * Snapshot is written to a temporary file next to the target one, which replaces
+ * the target atomically on {@link #close()}, so a failed snapshot never destroys the previous one.
+ * @version 1.0
+ */
+public class SnapshotWriter<K,V> implements Closeable {
+
+    // Snapshot file signature, "ySnp"
+    static final int MAGIC = 0x79536e70;
+    static final int VERSION = 1;
+    // Marks end of elements
+    static final int END = -1;
+    // Size of file region mapped at once
+    static final long WINDOW = 16L << 20;
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+
+    // Mapped region and its position in file
+    private MappedByteBuffer buffer;
+    private long base = 0;
+    // Number of written elements
+    private int count = 0;
+
+    /**
+     * Starts snapshot, which replaces existing file when it's closed.
+     *
+     * @param file File
+     * @param keySerializer Serializer of keys
+     * @param valueSerializer Serializer of values
+     * @throws IOException if file can't be created
+     */
+    public SnapshotWriter(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        this.target = file.toPath();
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        try {
+            ensure(8);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes element.
+     *
+     * @param key Key
+     * @param value Value
+     * @throws IOException if element can't be written
+     */
+    public void write(K key, V value) throws IOException {
+        byte[] keyData = keySerializer.serialize(key);
+        byte[] valueData = valueSerializer.serialize(value);
+        ensure(8 + keyData.length + valueData.length);
+        buffer.putInt(keyData.length);
+        buffer.put(keyData);
+        buffer.putInt(valueData.length);
+        buffer.put(valueData);
+        count++;
+    }
+
+    /**
+     * @return Number of written elements
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Finishes snapshot, flushes it to disk, cuts off unused part of the last window
+     * and replaces the target file. Snapshot is discarded if it can't be finished.
+     *
+     * @throws IOException if snapshot can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            ensure(4);
+            buffer.putInt(END);
+            buffer.force();
+            channel.truncate(base + buffer.position());
+            channel.force(true);
+            channel.close();
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Discards unfinished snapshot, the target file is left as it was.
+     */
+    public void abort() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // File is deleted anyway
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            // Nothing else to do, next snapshot overwrites it
+        }
+    }
+
+    /**
+     * Maps next window if current one has less than {@code length} bytes left.
+     */
+    private void ensure(int length) throws IOException {
+        if (buffer != null && buffer.remaining() >= length) return;
+        if (buffer != null) {
+            buffer.force();
+            base += buffer.position();
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, base, Math.max(WINDOW, length));
+    }
+}
@@ -0,0 +1,134 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import ycache.CacheStats;
+import ycache.SimpleCache;
+import ycache.eviction.LRUEviction;
+import ycache.metrics.CacheMetrics;
+import ycache.metrics.Histogram;
+import ycache.metrics.MetricsReporter;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Tests for CacheMetrics and Histogram classes.
+ */
+public class CacheMetricsTest {
+
+    @Test
+    public void testHistogram() {
+        System.out.print("\nTesting histogram\n");
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.snapshot().getP99());
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-1);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10001, snapshot.getCount());
+        assertEquals(10000, snapshot.getMax());
+        assertEquals(5000, snapshot.getMean(), 1);
+        // Buckets are 1/16 of power of two wide
+        assertPercentile(5000, snapshot.getP50());
+        assertPercentile(9000, snapshot.getP90());
+        assertPercentile(9900, snapshot.getP99());
+        assertEquals(0, snapshot.getPercentile(0));
+        assertEquals(10000, snapshot.getPercentile(100));
+        // Small values are exact
+        histogram = new Histogram();
+        histogram.record(3);
+        histogram.record(7);
+        assertEquals(3, histogram.snapshot().getP50());
+        assertEquals(7, histogram.snapshot().getP99());
+        // Huge values are capped
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(1L << 40, histogram.snapshot().getMax() + 1);
+    }
+
+    private static void assertPercentile(long expected, long actual) {
+        assertTrue("Value " + actual, actual >= expected && actual <= expected * 1.07);
+    }
+
+    @Test
+    public void testCacheMetrics() throws Exception {
+        System.out.print("\nTesting cache metrics\n");
+        SimpleCache<Integer,Integer> cache = new SimpleCache<Integer, Integer>(100, new LRUEviction<Integer>(100));
+        cache.put(0, 0);
+        assertNull(cache.getMetrics());
+        CacheMetrics metrics = cache.enableMetrics("test");
+        try {
+            assertSame(metrics, cache.enableMetrics("test"));
+            try {
+                new SimpleCache<Integer, Integer>(10).enableMetrics("test");
+                fail("Name should be unique");
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            for (int i = 0; i < 1000; i++) {
+                cache.put(i, i);
+                cache.get(i);
+                cache.get(-i - 1);
+            }
+            cache.remove(999);
+            cache.free(10);
+            assertEquals(1000, metrics.latency(CacheMetrics.Operation.PUT).getCount());
+            assertEquals(2000, metrics.latency(CacheMetrics.Operation.GET).getCount());
+            assertEquals(1, metrics.latency(CacheMetrics.Operation.REMOVE).getCount());
+            assertEquals(1, metrics.latency(CacheMetrics.Operation.FREE).getCount());
+            // Every put after the 100th evicts one element inline, free evicts 10 at once
+            Histogram.Snapshot victims = metrics.evictionVictims();
+            assertEquals(900 + 1, victims.getCount());
+            assertEquals(10, victims.getMax());
+            assertEquals(900 + 1, metrics.evictionTime().getCount());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(LRUEviction.class.getName(), server.getAttribute(metrics.getObjectName(), "Strategy"));
+            assertEquals(cache.getHits(), server.getAttribute(metrics.getObjectName(), "Hits"));
+            CompositeData latency = (CompositeData) server.getAttribute(metrics.getObjectName(), "GetLatency");
+            assertEquals(2000L, latency.get("count"));
+            assertTrue((Long) latency.get("p99") > 0);
+        } finally {
+            cache.disableMetrics();
+        }
+        assertNull(cache.getMetrics());
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(metrics.getObjectName()));
+        // Operations are not timed anymore
+        cache.get(0);
+        assertEquals(2000, metrics.latency(CacheMetrics.Operation.GET).getCount());
+    }
+
+    @Test
+    public void testReporter() throws InterruptedException {
+        System.out.print("\nTesting metrics reporter\n");
+        SimpleCache<Integer,Integer> cache = new SimpleCache<Integer, Integer>(100);
+        CacheMetrics metrics = cache.enableMetrics("reported");
+        final CountDownLatch reports = new CountDownLatch(3);
+        final long[] gets = new long[1];
+        try {
+            cache.put(1, 1);
+            cache.get(1);
+            metrics.addReporter(new MetricsReporter() {
+                @Override
+                public void report(CacheMetrics metrics, CacheStats stats) {
+                    gets[0] = metrics.latency(CacheMetrics.Operation.GET).getCount() + stats.getHitCount();
+                    reports.countDown();
+                    // Failed report doesn't stop the next ones
+                    throw new IllegalStateException("Reporter failed");
+                }
+            }, 10, TimeUnit.MILLISECONDS);
+            assertTrue(reports.await(5, TimeUnit.SECONDS));
+            assertEquals(2, gets[0]);
+        } finally {
+            cache.disableMetrics();
+        }
+    }
+}
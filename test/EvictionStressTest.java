@@ -0,0 +1,147 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import ycache.SimpleCache;
+import ycache.eviction.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Multi-threaded stress tests for eviction strategies.
+ * Checks that strategy tracks exactly the keys which are in cache map.
+ */
+public class EvictionStressTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 20000;
+    private static final int MAX_SIZE = 100;
+    private static final int KEYS = 500;
+    // Number of keys of bulk operations
+    private static final int BATCH = 3;
+
+    @Test
+    public void testFIFO() throws InterruptedException {
+        System.out.print("\nStress testing FIFO\n");
+        stress(new FIFOEviction<Integer>(MAX_SIZE));
+    }
+
+    @Test
+    public void testRandom() throws InterruptedException {
+        System.out.print("\nStress testing random\n");
+        stress(new RandomEviction<Integer>(MAX_SIZE));
+    }
+
+    @Test
+    public void testLRU() throws InterruptedException {
+        System.out.print("\nStress testing LRU\n");
+        stress(new LRUEviction<Integer>(MAX_SIZE));
+    }
+
+    @Test
+    public void testLFU() throws InterruptedException {
+        System.out.print("\nStress testing LFU\n");
+        stress(new LFUEviction<Integer>(MAX_SIZE, 1000));
+    }
+
+    @Test
+    public void testWTinyLFU() throws InterruptedException {
+        System.out.print("\nStress testing W-TinyLFU\n");
+        stress(new WTinyLFUEviction<Integer>(MAX_SIZE));
+    }
+
+    @Test
+    public void testARC() throws InterruptedException {
+        System.out.print("\nStress testing ARC\n");
+        stress(new ARCEviction<Integer>(MAX_SIZE));
+    }
+
+    @Test
+    public void testBufferedLRU() throws InterruptedException {
+        System.out.print("\nStress testing buffered LRU\n");
+        stress(new BufferedEviction<Integer>(new LRUEviction<Integer>(MAX_SIZE)));
+    }
+
+    @Test
+    public void testBufferedARC() throws InterruptedException {
+        System.out.print("\nStress testing buffered ARC\n");
+        stress(new BufferedEviction<Integer>(new ARCEviction<Integer>(MAX_SIZE)));
+    }
+
+    @Test
+    public void testMaintainedLRU() throws InterruptedException {
+        System.out.print("\nStress testing LRU with background maintenance\n");
+        stress(new LRUEviction<Integer>(MAX_SIZE), true);
+    }
+
+    private void stress(EvictionStrategy<Integer> strategy) throws InterruptedException {
+        stress(strategy, false);
+    }
+
+    private void stress(final EvictionStrategy<Integer> strategy, boolean maintained) throws InterruptedException {
+        final SimpleCache<Integer,Object> cache = new SimpleCache<Integer, Object>(MAX_SIZE, strategy);
+        if (maintained) cache.startMaintenance(0.9, 0.7);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random rnd = new Random(seed);
+                    try {
+                        start.await();
+                        for (int i = 0; i < OPERATIONS; i++) {
+                            Integer key = rnd.nextInt(KEYS);
+                            int op = rnd.nextInt(12);
+                            if (op < 4) cache.put(key, i);
+                            else if (op < 5) cache.putIfAbsent(key, i);
+                            else if (op < 6) cache.remove(key);
+                            else if (op < 10) cache.get(key);
+                            else if (op < 11) {
+                                Map<Integer,Object> batch = new HashMap<Integer, Object>();
+                                for (int j = 0; j < BATCH; j++) {
+                                    batch.put(rnd.nextInt(KEYS), i);
+                                }
+                                cache.putAll(batch);
+                            } else if (rnd.nextBoolean()) {
+                                cache.removeAll(Arrays.asList(key, rnd.nextInt(KEYS), rnd.nextInt(KEYS)));
+                            } else {
+                                cache.getAll(Arrays.asList(key, rnd.nextInt(KEYS), rnd.nextInt(KEYS)));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        cache.stopMaintenance();
+        if (error.get() != null) throw new AssertionError(error.get());
+
+        assertTrue(cache.size() <= MAX_SIZE + THREADS * BATCH);
+        int size = (int) cache.size();
+        assertEquals(cache.keys().size(), size);
+        // Strategy should track every cached key and nothing else
+        try {
+            strategy.nextVictims(size + 1);
+            fail("Strategy tracks keys which are not in cache");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertEquals(new HashSet<Integer>(cache.keys()), new HashSet<Integer>(strategy.nextVictims(size)));
+    }
+}
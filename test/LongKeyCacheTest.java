@@ -0,0 +1,138 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import ycache.LongKeyCache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for LongKeyCache class.
+ */
+public class LongKeyCacheTest {
+
+    @Test
+    public void testPutGet() {
+        System.out.print("\nTesting long key cache\n");
+        LongKeyCache<String> cache = new LongKeyCache<String>(50);
+        cache.put(0, "zero");
+        cache.put(-1, "minus one");
+        cache.put(Long.MAX_VALUE, "max");
+        assertEquals("zero", cache.get(0));
+        assertEquals("minus one", cache.get(-1));
+        assertEquals("max", cache.getQuiet(Long.MAX_VALUE));
+        assertNull(cache.get(1));
+        assertFalse(cache.putIfAbsent(0, "other"));
+        assertTrue(cache.putIfAbsent(1, "one"));
+        cache.put(0, "other");
+        assertEquals("other", cache.get(0));
+        cache.remove(0);
+        assertFalse(cache.contains(0));
+        assertEquals(3, cache.size());
+        long[] keys = cache.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(new long[]{-1, 1, Long.MAX_VALUE}, keys);
+        assertEquals(3, cache.values().size());
+        assertEquals(3, cache.stats().getHitCount());
+        assertEquals(1, cache.stats().getMissCount());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testClock() {
+        System.out.print("\nTesting CLOCK eviction\n");
+        // Single segment, so clock sweeps all elements
+        LongKeyCache<Long> cache = new LongKeyCache<Long>(50, 1);
+        for (long i = 0; i < 50; i++) {
+            cache.put(i, i);
+        }
+        // Referenced elements get second chance
+        for (long i = 0; i < 10; i++) {
+            cache.get(i);
+        }
+        for (long i = 50; i < 90; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(50, cache.size());
+        for (long i = 0; i < 10; i++) {
+            assertTrue(cache.contains(i));
+        }
+        assertEquals(40, cache.stats().getEvictionCount());
+        cache.free(50);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRandomOperations() {
+        System.out.print("\nTesting long key cache against map\n");
+        // Cache never evicts, so it should behave exactly like a map
+        LongKeyCache<Long> cache = new LongKeyCache<Long>(1000, 1);
+        Map<Long,Long> map = new HashMap<Long, Long>();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            // Multiples of table size collide
+            long key = rnd.nextInt(1000) * 2048L;
+            int op = rnd.nextInt(3);
+            if (op == 0) {
+                cache.put(key, (long) i);
+                map.put(key, (long) i);
+            } else if (op == 1) {
+                cache.remove(key);
+                map.remove(key);
+            } else {
+                assertEquals(map.get(key), cache.get(key));
+            }
+        }
+        assertEquals(map.size(), cache.size());
+        for (Map.Entry<Long,Long> entry : map.entrySet()) {
+            assertEquals(entry.getValue(), cache.getQuiet(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testSegments() throws InterruptedException {
+        System.out.print("\nTesting concurrent long key cache segments\n");
+        final LongKeyCache<Long> cache = new LongKeyCache<Long>(1000, 8);
+        Thread[] threads = new Thread[4];
+        final AtomicInteger wrong = new AtomicInteger();
+        for (int t = 0; t < threads.length; t++) {
+            final long seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random rnd = new Random(seed);
+                    for (int i = 0; i < 100000; i++) {
+                        long key = rnd.nextInt(5000);
+                        Long value = cache.get(key);
+                        if (value == null) cache.put(key, key);
+                        else if (value != key) wrong.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, wrong.get());
+        assertEquals(1000, cache.size());
+        assertEquals(1000, cache.keys().length);
+        assertEquals(4 * 100000, cache.stats().getHitCount() + cache.stats().getMissCount());
+        cache.free(995);
+        assertEquals(5, cache.size());
+        // Tiny cache gets a single segment
+        LongKeyCache<Long> tiny = new LongKeyCache<Long>(1);
+        tiny.put(1, 1L);
+        tiny.put(2, 2L);
+        assertEquals(1, tiny.size());
+        assertTrue(tiny.contains(2));
+    }
+}
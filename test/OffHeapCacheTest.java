@@ -0,0 +1,83 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import ycache.OffHeapCache;
+import ycache.serializer.JavaSerializer;
+
+import java.util.Arrays;
+
+/**
+ * Tests for OffHeapCache class.
+ */
+public class OffHeapCacheTest {
+
+    @Test
+    public void testPutGet() {
+        System.out.print("\nTesting off-heap cache\n");
+        OffHeapCache<String,String> cache = new OffHeapCache<String, String>(50, 1 << 20, new JavaSerializer<String>());
+        for (int i = 0; i < 100; i++) {
+            cache.put(String.valueOf(i), "value" + i);
+        }
+        assertTrue(cache.size() <= 50);
+        assertEquals("value99", cache.get("99"));
+        cache.put("99", "other");
+        assertEquals("other", cache.get("99"));
+        assertFalse(cache.putIfAbsent("99", "another"));
+        cache.remove("99");
+        assertNull(cache.get("99"));
+        assertEquals(cache.size(), cache.values().size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getOffHeapBytes());
+    }
+
+    @Test
+    public void testMemoryBound() {
+        System.out.print("\nTesting off-heap memory bound\n");
+        OffHeapCache<Integer,byte[]> cache = new OffHeapCache<Integer, byte[]>(1000, 64 * 1024, new JavaSerializer<byte[]>());
+        byte[] value = new byte[1000];
+        for (int i = 0; i < 100; i++) {
+            Arrays.fill(value, (byte) i);
+            cache.put(i, value);
+        }
+        // Every value takes 2 KB chunk
+        assertTrue(cache.size() <= 32);
+        assertTrue(cache.getOffHeapBytes() <= 64 * 1024);
+        assertEquals(99, cache.get(99)[0]);
+        assertTrue(cache.stats().getEvictionCount() > 0);
+        // Value which doesn't fit drops the stale one and is not counted
+        long puts = cache.stats().getPutCount();
+        cache.put(99, new byte[100000]);
+        assertFalse(cache.contains(99));
+        assertNull(cache.get(99));
+        assertEquals(puts, cache.stats().getPutCount());
+    }
+
+    @Test
+    public void testSizeClasses() {
+        System.out.print("\nTesting off-heap size classes\n");
+        // 4 slabs of 1 MB
+        OffHeapCache<Integer,byte[]> cache = new OffHeapCache<Integer, byte[]>(100000, 4 << 20, new JavaSerializer<byte[]>());
+        byte[] small = new byte[10];
+        int count = 0;
+        while (cache.stats().getEvictionCount() == 0) {
+            cache.put(count++, small);
+        }
+        // Large value takes a slab emptied by eviction of the oldest small values,
+        // at most two slabs are emptied as the first one got a new value meanwhile
+        byte[] large = new byte[5000];
+        Arrays.fill(large, (byte) 1);
+        cache.put(-1, large);
+        assertTrue(cache.contains(-1));
+        assertEquals(1, cache.get(-1)[4999]);
+        assertTrue("Size " + cache.size(), cache.size() >= count / 2 - 10);
+        // Small values still fit
+        cache.put(count, small);
+        assertTrue(cache.contains(count));
+        assertEquals(5000, cache.get(-1).length);
+        assertTrue(cache.getReservedOffHeapBytes() <= 4 << 20);
+    }
+}
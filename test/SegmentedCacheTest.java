@@ -0,0 +1,105 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import ycache.Cache;
+import ycache.SegmentedCache;
+import ycache.SimpleCache;
+import ycache.eviction.EvictionStrategy;
+import ycache.eviction.EvictionStrategyFactory;
+import ycache.eviction.FIFOEviction;
+
+import java.util.Random;
+
+/**
+ * Tests for SegmentedCache class.
+ */
+public class SegmentedCacheTest {
+
+    @Test
+    public void testEviction() {
+        System.out.print("\nTesting segmented cache\n");
+        Cache<String,Object> cache = new SegmentedCache<String, Object>(256, 4, new EvictionStrategyFactory<String>() {
+            @Override
+            public EvictionStrategy<String> create(int cacheSize) {
+                return new FIFOEviction<String>(cacheSize);
+            }
+        });
+        for (int i = 0; i < 1000; i++) {
+            cache.put(String.valueOf(i), i);
+        }
+        assertTrue(cache.size() <= 256);
+        assertEquals(cache.size(), cache.keys().size());
+        assertTrue(cache.contains("999"));
+        assertEquals(999, cache.get("999"));
+        assertTrue(cache.putIfAbsent("x", 1));
+        cache.remove("x");
+        assertEquals(null, cache.get("x"));
+        cache.free(20);
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSizes() {
+        System.out.print("\nTesting segmented cache sizes\n");
+        // Default number of segments fits small caches
+        Cache<Integer,Object> cache = new SegmentedCache<Integer, Object>(5);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        assertTrue(cache.size() > 0 && cache.size() <= 5);
+        // Tiny cache gets a single segment
+        cache = new SegmentedCache<Integer, Object>(1);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains(2));
+        // Full segments hold exactly max size
+        cache = new SegmentedCache<Integer, Object>(10, 4, new EvictionStrategyFactory<Integer>() {
+            @Override
+            public EvictionStrategy<Integer> create(int cacheSize) {
+                return new FIFOEviction<Integer>(cacheSize);
+            }
+        });
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testThroughput() throws InterruptedException {
+        // not a real benchmark, but shows the difference
+        System.out.print("\nComparing segmented and simple cache\n");
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.printf("SimpleCache, %d threads - %d ns %n", threads,
+                run(new SimpleCache<Integer, Object>(10000), threads));
+        System.out.printf("SegmentedCache, %d threads - %d ns %n", threads,
+                run(new SegmentedCache<Integer, Object>(10000), threads));
+    }
+
+    private long run(final Cache<Integer,Object> cache, int threads) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random rnd = new Random(seed);
+                    for (int i = 0; i < 100000; i++) {
+                        Integer key = rnd.nextInt(20000);
+                        if (cache.get(key) == null)
+                            cache.put(key, i);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -1,13 +1,33 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 import ycache.Cache;
+import ycache.CacheEventListener;
+import ycache.CacheStats;
+import ycache.ExpiringCache;
 import ycache.SimpleCache;
+import ycache.Weigher;
+import ycache.eviction.ARCEviction;
 import ycache.eviction.FIFOEviction;
 import ycache.eviction.LFUEviction;
+import ycache.eviction.LRUEviction;
 import ycache.eviction.RandomEviction;
+import ycache.eviction.WTinyLFUEviction;
+import ycache.expiry.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for SimpleCache class.
@@ -67,6 +87,346 @@ public class SimpleCacheTest {
         }
     }
 
+    @Test
+    public void testLFUAging() {
+        System.out.print("\nTesting LFU aging\n");
+        LFUEviction<String> lfu = new LFUEviction<String>(10, 8);
+        lfu.notifyPut("old");
+        for (int i = 0; i < 6; i++) {
+            lfu.notifyGet("old");
+        }
+        lfu.notifyPut("new");
+        lfu.notifyGet("new");
+        assertEquals("new", lfu.nextVictims(1).iterator().next());
+        // Every 8 accesses counters are halved, so "old" cools down
+        for (int i = 0; i < 10; i++) {
+            lfu.notifyGet("new");
+        }
+        assertEquals("old", lfu.nextVictims(1).iterator().next());
+    }
+
+    @Test
+    public void testWTinyLFU() {
+        System.out.print("\nTesting W-TinyLFU\n");
+        Cache<String,Object> cache = new SimpleCache<String, Object>(100, new WTinyLFUEviction<String>(100));
+        for (int i = 0; i < 50; i++) {
+            cache.put(String.valueOf(i), i);
+        }
+        for (int k = 0; k < 5; k++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get(String.valueOf(i));
+            }
+        }
+        // Scan of keys used only once should not push out hot keys
+        for (int i = 1000; i < 2000; i++) {
+            cache.put(String.valueOf(i), i);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertTrue(cache.contains(String.valueOf(i)));
+        }
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    public void testARC() {
+        System.out.print("\nTesting ARC\n");
+        ARCEviction<String> arc = new ARCEviction<String>(4);
+        Cache<String,Object> cache = new SimpleCache<String, Object>(4, arc);
+        for (String key : Arrays.asList("a", "b", "c", "d")) {
+            cache.put(key, key);
+        }
+        cache.get("a");
+        cache.get("b");
+        // Keys used once are evicted first
+        cache.put("e", "e");
+        cache.put("f", "f");
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertFalse(cache.contains("c"));
+        // Miss of recently evicted key makes recency list longer
+        assertNull(cache.get("c"));
+        assertEquals(1, arc.getRecencyTarget());
+        cache.put("c", "c");
+        assertFalse(cache.contains("e"));
+        assertTrue(cache.contains("c"));
+        // Recency list is within its target, so frequency list gives victim
+        cache.put("g", "g");
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.contains("f"));
+        assertNull(cache.get("a"));
+        assertEquals(0, arc.getRecencyTarget());
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testMaintenance() throws InterruptedException {
+        System.out.print("\nTesting background maintenance\n");
+        SimpleCache<Integer,Object> cache = new SimpleCache<Integer, Object>(100);
+        cache.startMaintenance(0.9, 0.5);
+        for (int i = 0; i < 90; i++) {
+            cache.put(i, i);
+        }
+        // Cache is not above the high watermark yet
+        Thread.sleep(100);
+        assertEquals(90, cache.size());
+        cache.put(90, 90);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.size() > 50 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(50, cache.size());
+        assertTrue(cache.contains(90));
+        assertFalse(cache.contains(0));
+        // Max size is still a hard bound
+        for (int i = 100; i < 10000; i++) {
+            cache.put(i, i);
+            assertTrue(cache.size() <= 100);
+        }
+        cache.stopMaintenance();
+        for (int i = 0; i < 200; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(cache.keys().size(), cache.size());
+    }
+
+    @Test
+    public void testWeightedMaintenance() throws InterruptedException {
+        System.out.print("\nTesting background maintenance of weighted cache\n");
+        SimpleCache<Integer,byte[]> cache = new SimpleCache<Integer, byte[]>(1000, new Weigher<Integer, byte[]>() {
+            @Override
+            public int weigh(Integer key, byte[] value) {
+                return value.length;
+            }
+        }, new LRUEviction<Integer>(1000));
+        cache.startMaintenance(0.9, 0.5);
+        try {
+            for (int i = 0; i < 9; i++) {
+                cache.put(i, new byte[100]);
+            }
+            Thread.sleep(100);
+            assertEquals(9, cache.size());
+            cache.put(9, new byte[100]);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (cache.size() > 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            // Eviction stops at the low watermark
+            assertEquals(5, cache.size());
+            assertEquals(500, cache.weight());
+            assertTrue(cache.contains(9));
+            assertFalse(cache.contains(4));
+        } finally {
+            cache.stopMaintenance();
+        }
+    }
+
+    @Test
+    public void testStats() {
+        System.out.print("\nTesting stats\n");
+        SimpleCache<String,Object> cache = new SimpleCache<String, Object>(50);
+        for (int i = 0; i < 100; i++) {
+            cache.put(String.valueOf(i), i);
+        }
+        cache.put("99", 99);
+        cache.remove("absent");
+        assertEquals(cache.keys().size(), cache.size());
+        cache.get("99");
+        cache.get("absent");
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(101, stats.getPutCount());
+        assertEquals(100 - cache.size(), stats.getEvictionCount());
+        assertEquals(0.5, stats.hitRate(), 0.0);
+    }
+
+    @Test
+    public void testWeigher() {
+        System.out.print("\nTesting weigher\n");
+        SimpleCache<String,String> cache = new SimpleCache<String, String>(100, new Weigher<String, String>() {
+            @Override
+            public int weigh(String key, String value) {
+                return value.length();
+            }
+        }, new LRUEviction<String>());
+        for (int i = 0; i < 20; i++) {
+            cache.put(String.valueOf(i), "0123456789");
+        }
+        assertEquals(10, cache.size());
+        assertEquals(100, cache.weight());
+        // Heavy element pushes out as many elements as needed
+        cache.put("big", "0123456789012345678901234567890123456789");
+        assertEquals(100, cache.weight());
+        assertEquals(7, cache.size());
+        assertTrue(cache.contains("big"));
+        assertTrue(cache.contains("19"));
+        // Too heavy element is not cached at all
+        cache.put("huge", new String(new char[101]));
+        assertFalse(cache.contains("huge"));
+        cache.remove("big");
+        assertEquals(60, cache.weight());
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        System.out.print("\nTesting expiration\n");
+        ExpiringCache<String,Object> cache = new SimpleCache<String, Object>(50);
+        cache.put("ttl", 1, 50, 0, TimeUnit.MILLISECONDS);
+        cache.put("tti", 2, 0, 100, TimeUnit.MILLISECONDS);
+        cache.put("forever", 3);
+        Thread.sleep(60);
+        assertNull(cache.get("ttl"));
+        assertEquals(2, cache.get("tti"));
+        Thread.sleep(60);
+        // Access postponed expiration
+        assertEquals(2, cache.get("tti"));
+        assertTrue(cache.putIfAbsent("ttl", 4));
+        Thread.sleep(120);
+        assertFalse(cache.contains("tti"));
+        assertEquals(3, cache.get("forever"));
+
+        cache.setDefaultExpiration(10, 0, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 20; i++) {
+            cache.put(String.valueOf(i), i);
+        }
+        // Expired elements are removed in batch once wheel passes their bucket
+        Thread.sleep(1200);
+        cache.cleanUp();
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testTimerWheel() {
+        System.out.print("\nTesting timer wheel\n");
+        long second = 1L << 30;
+        TimerWheel<String> wheel = new TimerWheel<String>();
+        wheel.schedule("idle", 0, second, 0);
+        assertEquals(Collections.singletonList("idle"), wheel.advance(2 * second));
+        // Element accessed after it was returned is put back to the wheel
+        wheel.touch("idle", 2 * second);
+        assertFalse(wheel.isExpired("idle", 2 * second));
+        wheel.reschedule("idle");
+        assertEquals(Collections.singletonList("idle"), wheel.advance(4 * second));
+        wheel.cancel("idle");
+
+        // Deadline which has passed is expired by the next advance, not after the wheel turns
+        wheel.advance(10 * second);
+        wheel.schedule("late", second, 0, 0);
+        assertEquals(Collections.singletonList("late"), wheel.advance(11 * second));
+    }
+
+    @Test
+    public void testBulk() {
+        System.out.print("\nTesting bulk operations\n");
+        SimpleCache<String,Object> cache = new SimpleCache<String, Object>(50);
+        Map<String,Object> elements = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < 80; i++) {
+            elements.put("key" + i, i);
+        }
+        cache.putAll(elements);
+        // Batch is evicted once, oldest elements of batch are gone
+        assertEquals(50, cache.size());
+        assertFalse(cache.contains("key29"));
+        assertEquals(30, cache.getQuiet("key30"));
+        Map<String,Object> values = cache.getAll(Arrays.asList("key0", "key30", "key31", "key79"));
+        assertEquals(3, values.size());
+        assertEquals(79, values.get("key79"));
+        assertEquals(3, cache.stats().getHitCount());
+        assertEquals(1, cache.stats().getMissCount());
+        // Accessed elements are the most recent ones
+        cache.putAll(Collections.<String, Object>singletonMap("new", 0));
+        assertEquals(50, cache.size());
+        assertTrue(cache.contains("key30"));
+        assertFalse(cache.contains("key32"));
+        cache.removeAll(Arrays.asList("key30", "key31", "key32", "new"));
+        assertEquals(47, cache.size());
+        cache.free(47);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLargeBulk() {
+        System.out.print("\nTesting bulk put larger than cache\n");
+        final int[] passes = new int[1];
+        SimpleCache<Integer,Object> cache = new SimpleCache<Integer, Object>(50, new LRUEviction<Integer>(50) {
+            @Override
+            public synchronized Collection<Integer> nextVictims(int count) {
+                passes[0]++;
+                return super.nextVictims(count);
+            }
+        });
+        cache.put(5, "old");
+        Map<Integer,Object> elements = new LinkedHashMap<Integer, Object>();
+        for (int i = 0; i < 100000; i++) {
+            elements.put(i, i);
+        }
+        elements.put(-1, 0);
+        cache.putAll(elements);
+        // Only the last elements are put, value of skipped key is removed
+        assertEquals(50, cache.size());
+        assertEquals(50, cache.stats().getPutCount() - 1);
+        assertTrue(cache.contains(99999));
+        assertEquals(0, cache.getQuiet(-1));
+        assertFalse(cache.contains(99950));
+        assertFalse(cache.contains(5));
+        assertEquals(0, passes[0]);
+        // Overflow is evicted by one pass
+        elements.clear();
+        for (int i = 0; i < 30; i++) {
+            elements.put(-i - 2, i);
+        }
+        cache.putAll(elements);
+        assertEquals(50, cache.size());
+        assertEquals(1, passes[0]);
+        assertTrue(cache.contains(-31));
+        assertFalse(cache.contains(99980));
+        assertTrue(cache.contains(99981));
+    }
+
+    @Test
+    public void testEvents() throws InterruptedException {
+        System.out.print("\nTesting event listener\n");
+        SimpleCache<String,Object> cache = new SimpleCache<String, Object>(2);
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        cache.setEventListener(new CacheEventListener<String, Object>() {
+            @Override
+            public void onPut(String key, Object value) {
+                events.add("put " + key);
+            }
+
+            @Override
+            public void onEvict(String key, Object value) {
+                events.add("evict " + key);
+            }
+
+            @Override
+            public void onRemove(String key, Object value) {
+                events.add("remove " + key);
+            }
+
+            @Override
+            public void onExpire(String key, Object value) {
+                events.add("expire " + key);
+            }
+        }, executor);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        cache.remove("b");
+        cache.remove("b");
+        cache.put("d", 4, 50, 0, TimeUnit.MILLISECONDS);
+        Thread.sleep(100);
+        assertNull(cache.get("d"));
+        cache.setEventListener(null, null);
+        cache.put("e", 5);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("put a", "put b", "evict a", "put c", "remove b", "put d", "expire d"), events);
+    }
+
     @Test
     public void testConcurrency() throws InterruptedException {
         // not good test, but at least something
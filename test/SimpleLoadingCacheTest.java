@@ -0,0 +1,184 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import ycache.CacheLoader;
+import ycache.CacheLoadingException;
+import ycache.LoadingCache;
+import ycache.SimpleLoadingCache;
+import ycache.eviction.LRUEviction;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for SimpleLoadingCache class.
+ */
+public class SimpleLoadingCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicInteger bulkLoads = new AtomicInteger();
+
+    private final CacheLoader<Integer,String> loader = new CacheLoader<Integer, String>() {
+        @Override
+        public String load(Integer key) throws Exception {
+            loads.incrementAndGet();
+            Thread.sleep(50);
+            if (key < 0) throw new Exception("Negative key");
+            return key == 0 ? null : "value" + key;
+        }
+
+        @Override
+        public Map<Integer, String> loadAll(Collection<? extends Integer> keys) throws Exception {
+            bulkLoads.incrementAndGet();
+            Map<Integer,String> res = new HashMap<Integer, String>();
+            for (Integer key : keys) {
+                res.put(key, "value" + key);
+            }
+            return res;
+        }
+    };
+
+    @Test
+    public void testSingleLoad() throws InterruptedException {
+        System.out.print("\nTesting single-flight loading\n");
+        final LoadingCache<Integer,String> cache = new SimpleLoadingCache<Integer, String>(50, loader);
+        Thread[] threads = new Thread[8];
+        final AtomicInteger found = new AtomicInteger();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    if ("value1".equals(cache.get(1))) found.incrementAndGet();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threads.length, found.get());
+        assertEquals(1, loads.get());
+        assertEquals("value1", cache.getQuiet(1));
+        // Missing value is not cached
+        assertNull(cache.get(0));
+        assertTrue(!cache.contains(0));
+    }
+
+    @Test
+    public void testGetAll() throws Exception {
+        System.out.print("\nTesting bulk loading\n");
+        LoadingCache<Integer,String> cache = new SimpleLoadingCache<Integer, String>(50, loader);
+        cache.put(1, "cached");
+        Map<Integer,String> values = cache.getAll(Arrays.asList(1, 2, 3, 3));
+        assertEquals(3, values.size());
+        assertEquals("cached", values.get(1));
+        assertEquals("value3", values.get(3));
+        assertEquals(1, bulkLoads.get());
+        assertEquals("value2", cache.getAsync(2).get());
+        assertEquals("value4", cache.getAsync(4).get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testFailure() throws InterruptedException {
+        System.out.print("\nTesting loading failure\n");
+        LoadingCache<Integer,String> cache = new SimpleLoadingCache<Integer, String>(50, loader);
+        try {
+            cache.get(-1);
+            fail("Failure is not reported");
+        } catch (CacheLoadingException e) {
+            assertEquals("Negative key", e.getCause().getMessage());
+        }
+        try {
+            cache.getAsync(-1).get();
+            fail("Failure is not reported");
+        } catch (ExecutionException e) {
+            assertEquals("Negative key", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        System.out.print("\nTesting refresh after write\n");
+        final AtomicInteger version = new AtomicInteger();
+        SimpleLoadingCache<Integer,String> cache = new SimpleLoadingCache<Integer, String>(50, new CacheLoader<Integer, String>() {
+            @Override
+            public String load(Integer key) throws Exception {
+                Thread.sleep(50);
+                return "value" + key + "." + version.incrementAndGet();
+            }
+        });
+        cache.setRefreshAfterWrite(200, TimeUnit.MILLISECONDS);
+        assertEquals("value1.1", cache.get(1));
+        assertEquals("value2.2", cache.get(2));
+        Thread.sleep(300);
+        // Stale value is returned at once and reloaded only once
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value1.1", cache.get(1));
+        }
+        Thread.sleep(150);
+        assertEquals("value1.3", cache.get(1));
+        assertEquals(3, version.get());
+        // Key which isn't read is not refreshed
+        assertEquals("value2.2", cache.getQuiet(2));
+    }
+
+    @Test
+    public void testRejectedLoad() throws InterruptedException {
+        System.out.print("\nTesting load rejected by executor\n");
+        LoadingCache<Integer,String> cache = new SimpleLoadingCache<Integer, String>(50,
+                new LRUEviction<Integer>(50), loader, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+        });
+        try {
+            cache.getAsync(1).get();
+            fail("Rejection is not reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        // Rejected load doesn't block the next ones
+        assertEquals("value1", cache.get(1));
+        assertEquals(1, cache.getAll(Arrays.asList(1)).size());
+    }
+
+    @Test
+    public void testReloadRace() throws Exception {
+        System.out.print("\nTesting put during reload\n");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger version = new AtomicInteger();
+        SimpleLoadingCache<Integer,String> cache = new SimpleLoadingCache<Integer, String>(50, new CacheLoader<Integer, String>() {
+            @Override
+            public String load(Integer key) throws Exception {
+                if (version.incrementAndGet() > 1) {
+                    started.countDown();
+                    release.await();
+                }
+                return "loaded" + version.get();
+            }
+        });
+        cache.setRefreshAfterWrite(50, TimeUnit.MILLISECONDS);
+        assertEquals("loaded1", cache.get(1));
+        Thread.sleep(100);
+        // Starts slow reload
+        assertEquals("loaded1", cache.get(1));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        cache.put(1, "user");
+        release.countDown();
+        Thread.sleep(200);
+        // Newer value is not overwritten by reloaded one
+        assertEquals("user", cache.getQuiet(1));
+        assertEquals(2, version.get());
+    }
+}
@@ -0,0 +1,157 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import ycache.SimpleCache;
+import ycache.eviction.EvictionStrategy;
+import ycache.eviction.FIFOEviction;
+import ycache.eviction.LFUEviction;
+import ycache.eviction.LRUEviction;
+import ycache.serializer.JavaSerializer;
+import ycache.snapshot.SnapshotReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for cache snapshots.
+ */
+public class SnapshotTest {
+
+    private final JavaSerializer<Integer> keys = new JavaSerializer<Integer>();
+    private final JavaSerializer<String> values = new JavaSerializer<String>();
+
+    @Test
+    public void testRestore() throws Exception {
+        System.out.print("\nTesting snapshot and restore\n");
+        File file = tempFile();
+        SimpleCache<Integer,String> cache = new SimpleCache<Integer, String>(50);
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, "value" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            cache.get(i);
+        }
+        assertEquals(50, cache.snapshot(file, keys, values));
+
+        // The most recently used elements are saved first
+        SnapshotReader<Integer,String> reader = new SnapshotReader<Integer, String>(file, keys, values);
+        assertTrue(reader.next());
+        assertEquals(Integer.valueOf(9), reader.getKey());
+        assertEquals("value9", reader.getValue());
+        reader.close();
+
+        SimpleCache<Integer,String> restored = new SimpleCache<Integer, String>(50);
+        restored.put(0, "fresh");
+        assertEquals(49, restored.restoreAsync(file, keys, values, ForkJoinPool.commonPool()).get(1, TimeUnit.SECONDS).intValue());
+        assertEquals(50, restored.size());
+        assertEquals("fresh", restored.get(0));
+        assertEquals("value49", restored.get(49));
+
+        // Smaller cache gets the hottest elements
+        SimpleCache<Integer,String> small = new SimpleCache<Integer, String>(10);
+        assertEquals(10, small.restore(file, keys, values));
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value" + i, small.getQuiet(i));
+        }
+    }
+
+    @Test
+    public void testRestoredOrder() throws Exception {
+        System.out.print("\nTesting eviction order of restored elements\n");
+        File file = tempFile();
+        SimpleCache<Integer,String> cache = new SimpleCache<Integer, String>(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value" + i);
+        }
+        cache.get(9);
+        cache.snapshot(file, keys, values);
+        // The coldest element is evicted first, whatever the strategy
+        @SuppressWarnings("unchecked")
+        EvictionStrategy<Integer>[] strategies = new EvictionStrategy[]{
+                new LRUEviction<Integer>(10), new FIFOEviction<Integer>(10), new LFUEviction<Integer>(10)};
+        for (EvictionStrategy<Integer> strategy : strategies) {
+            SimpleCache<Integer,String> restored = new SimpleCache<Integer, String>(10, strategy);
+            assertEquals(10, restored.restore(file, keys, values));
+            restored.put(10, "value10");
+            assertTrue(strategy.toString(), restored.contains(9));
+            assertTrue(strategy.toString(), !restored.contains(0));
+            restored.put(11, "value11");
+            assertTrue(strategy.toString(), restored.contains(9));
+            assertTrue(strategy.toString(), !restored.contains(1));
+        }
+    }
+
+    @Test
+    public void testLargeSnapshot() throws Exception {
+        System.out.print("\nTesting snapshot larger than mapped window\n");
+        File file = tempFile();
+        JavaSerializer<byte[]> bytes = new JavaSerializer<byte[]>();
+        SimpleCache<Integer,byte[]> cache = new SimpleCache<Integer, byte[]>(300, new LFUEviction<Integer>(300));
+        for (int i = 0; i < 300; i++) {
+            byte[] value = new byte[100 * 1024];
+            value[i] = (byte) i;
+            cache.put(i, value);
+        }
+        assertEquals(300, cache.snapshot(file, keys, bytes));
+        SimpleCache<Integer,byte[]> restored = new SimpleCache<Integer, byte[]>(300);
+        assertEquals(300, restored.restore(file, keys, bytes));
+        for (int i = 0; i < 300; i++) {
+            assertArrayEquals(cache.getQuiet(i), restored.getQuiet(i));
+        }
+    }
+
+    @Test
+    public void testCorrupted() throws Exception {
+        System.out.print("\nTesting corrupted snapshot\n");
+        File file = tempFile();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        out.close();
+        try {
+            new SimpleCache<Integer, String>(50).restore(file, keys, values);
+            fail("Corrupted snapshot is not reported");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFailedSnapshot() throws Exception {
+        System.out.print("\nTesting failed snapshot\n");
+        File file = tempFile();
+        SimpleCache<Integer,String> cache = new SimpleCache<Integer, String>(50);
+        for (int i = 0; i < 20; i++) {
+            cache.put(i, "value" + i);
+        }
+        assertEquals(20, cache.snapshot(file, keys, values));
+        cache.put(20, "broken");
+        try {
+            cache.snapshot(file, keys, new JavaSerializer<String>() {
+                @Override
+                public byte[] serialize(String value) {
+                    if ("broken".equals(value)) throw new IllegalStateException("Can't serialize");
+                    return super.serialize(value);
+                }
+            });
+            fail("Failure is not reported");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // The previous snapshot is intact
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        assertEquals(20, new SimpleCache<Integer, String>(50).restore(file, keys, values));
+    }
+
+    private File tempFile() throws IOException {
+        File file = File.createTempFile("ycache", ".snapshot");
+        file.deleteOnExit();
+        return file;
+    }
+}
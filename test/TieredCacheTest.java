@@ -0,0 +1,177 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import ycache.TieredCache;
+import ycache.eviction.LRUEviction;
+import ycache.serializer.JavaSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for TieredCache class.
+ */
+public class TieredCacheTest {
+
+    private final JavaSerializer<String> values = new JavaSerializer<String>();
+
+    @Test
+    public void testDemotionAndPromotion() throws IOException {
+        System.out.print("\nTesting tiered cache demotion and promotion\n");
+        TieredCache<Integer,String> cache = new TieredCache<Integer, String>(3, tempFile(), 1 << 20, values);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, "value" + i);
+        }
+        // The oldest elements are moved to disk
+        assertEquals(3, cache.getHeapSize());
+        assertEquals(2, cache.getDiskSize());
+        assertEquals(5, cache.size());
+        assertEquals(2, cache.getDemotions());
+        assertEquals("value0", cache.getQuiet(0));
+        assertEquals(2, cache.getDiskSize());
+
+        assertEquals("value4", cache.get(4));
+        assertEquals("value0", cache.get(0));
+        assertNull(cache.get(10));
+        assertEquals(1, cache.getHeapHits());
+        assertEquals(1, cache.getDiskHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getPromotions());
+        // Promoted element pushed another one to disk
+        assertEquals(3, cache.getHeapSize());
+        assertEquals(2, cache.getDiskSize());
+        assertEquals(5, cache.keys().size());
+        assertEquals(5, cache.values().size());
+        cache.close();
+    }
+
+    @Test
+    public void testRemove() throws IOException {
+        System.out.print("\nTesting tiered cache remove\n");
+        TieredCache<Integer,String> cache = new TieredCache<Integer, String>(2, tempFile(), 1 << 20, values);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, "value" + i);
+        }
+        assertFalse(cache.putIfAbsent(0, "other"));
+        // New value replaces the one on disk
+        cache.put(1, "fresh");
+        assertEquals("fresh", cache.get(1));
+        cache.remove(0);
+        cache.remove(3);
+        assertFalse(cache.contains(0));
+        assertFalse(cache.contains(3));
+        cache.free(1);
+        assertNull(cache.get(0));
+        assertEquals("fresh", cache.get(1));
+        assertTrue(cache.putIfAbsent(0, "again"));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(2));
+        cache.close();
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        System.out.print("\nTesting tiered cache disk compaction\n");
+        File file = tempFile();
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'x');
+        String big = new String(chars);
+        TieredCache<Integer,String> cache = new TieredCache<Integer, String>(1, file, 1 << 20, values);
+        cache.put(0, big + 0);
+        cache.put(1, big + 1);
+        // Every promotion leaves garbage in the log and demotes the other element
+        for (int i = 0; i < 500; i++) {
+            assertEquals(big + (i % 2), cache.get(i % 2));
+        }
+        assertTrue(cache.getCompactions() > 0);
+        assertTrue(file.length() < 1 << 20);
+        assertEquals(1, cache.getDiskSize());
+        assertEquals(big + 0, cache.getQuiet(0));
+
+        // Disk tier drops its oldest elements when it is full
+        for (int i = 2; i < 200; i++) {
+            cache.put(i, big + i);
+        }
+        assertTrue(cache.getDiskSize() < 105);
+        assertNull(cache.get(2));
+        assertEquals(big + 198, cache.get(198));
+        cache.close();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testRejectedPromotion() throws IOException {
+        System.out.print("\nTesting tiered cache promotion rejected by heap\n");
+        final boolean[] admit = {true};
+        TieredCache<Integer,String> cache = new TieredCache<Integer, String>(2, new LRUEviction<Integer>(2) {
+            @Override
+            public boolean admit(Integer key) {
+                return admit[0];
+            }
+        }, tempFile(), 1 << 20, values);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, "value" + i);
+        }
+        admit[0] = false;
+        assertEquals("value0", cache.get(0));
+        // Element not admitted to heap stays on disk
+        assertEquals(0, cache.getPromotions());
+        assertEquals(2, cache.getHeapSize());
+        assertEquals(2, cache.getDiskSize());
+        assertEquals("value0", cache.get(0));
+        assertEquals(2, cache.getDiskHits());
+        cache.close();
+    }
+
+    @Test
+    public void testConcurrentDemotion() throws Exception {
+        System.out.print("\nTesting concurrent tiered cache demotion\n");
+        final TieredCache<Integer,String> cache = new TieredCache<Integer, String>(4, tempFile(), 1 << 20, values);
+        final int keys = 32;
+        final AtomicInteger lost = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random rnd = new Random(seed);
+                    for (int i = 0; i < 20000; i++) {
+                        int key = rnd.nextInt(keys);
+                        if (rnd.nextInt(4) == 0) {
+                            cache.put(key, "value" + key);
+                        } else {
+                            String value = cache.get(key);
+                            if (value != null && !value.equals("value" + key)) lost.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, lost.get());
+        // Every key lives in one tier only and none is lost
+        assertEquals(keys, cache.keys().size());
+        assertEquals(keys, cache.getHeapSize() + cache.getDiskSize());
+        for (int i = 0; i < keys; i++) {
+            assertEquals("value" + i, cache.get(i));
+        }
+        cache.close();
+    }
+
+    private File tempFile() throws IOException {
+        File file = File.createTempFile("ycache", ".log");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,145 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import ycache.CacheWriter;
+import ycache.WriteBehindCache;
+import ycache.eviction.LRUEviction;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for WriteBehindCache class.
+ */
+public class WriteBehindCacheTest {
+
+    /**
+     * In-memory store which counts writes.
+     */
+    private static class FakeStore implements CacheWriter<String, Integer> {
+        final Map<String,Integer> data = new ConcurrentHashMap<String, Integer>();
+        final AtomicInteger batches = new AtomicInteger();
+        final AtomicInteger writes = new AtomicInteger();
+        volatile CountDownLatch gate = new CountDownLatch(0);
+
+        @Override
+        public void write(String key, Integer value) throws Exception {
+            gate.await();
+            writes.incrementAndGet();
+            data.put(key, value);
+        }
+
+        @Override
+        public void delete(String key) throws Exception {
+            data.remove(key);
+        }
+
+        @Override
+        public void writeAll(Map<String, Integer> values) throws Exception {
+            batches.incrementAndGet();
+            for (Map.Entry<String,Integer> entry : values.entrySet()) {
+                write(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public void deleteAll(Collection<String> keys) throws Exception {
+            for (String key : keys) {
+                delete(key);
+            }
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws InterruptedException {
+        System.out.print("\nTesting write-behind coalescing\n");
+        FakeStore store = new FakeStore();
+        WriteBehindCache<String,Integer> cache = new WriteBehindCache<String, Integer>(100,
+                new LRUEviction<String>(100), store, 20, 200, TimeUnit.MILLISECONDS, 1000);
+        for (int i = 0; i < 5; i++) {
+            cache.put("a", i);
+        }
+        Map<String,Integer> batch = new HashMap<String, Integer>();
+        for (int i = 0; i < 9; i++) {
+            batch.put("b" + i, i);
+        }
+        cache.putAll(batch);
+        cache.put("c", 0);
+        cache.remove("c");
+        // Written in background, not by puts
+        assertTrue(store.data.isEmpty());
+        Thread.sleep(500);
+        assertEquals(10, store.data.size());
+        assertEquals(Integer.valueOf(4), store.data.get("a"));
+        assertFalse(store.data.containsKey("c"));
+        assertEquals(10, store.writes.get());
+        assertEquals(1, store.batches.get());
+        cache.removeAll(Arrays.asList("b0", "b1"));
+        cache.close();
+        assertEquals(8, store.data.size());
+        assertEquals(0, cache.getPendingChanges());
+    }
+
+    @Test
+    public void testEviction() throws InterruptedException {
+        System.out.print("\nTesting write-behind eviction\n");
+        FakeStore store = new FakeStore();
+        WriteBehindCache<String,Integer> cache = new WriteBehindCache<String, Integer>(2,
+                new LRUEviction<String>(2), store, 10, 10, TimeUnit.SECONDS, 100);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        // Evicted element is written in background without waiting for flush delay
+        assertNull(cache.getQuiet("a"));
+        for (int i = 0; i < 100 && !store.data.containsKey("a"); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(Integer.valueOf(1), store.data.get("a"));
+        cache.flush();
+        assertEquals(3, store.data.size());
+        cache.close();
+    }
+
+    @Test
+    public void testBackpressure() throws InterruptedException {
+        System.out.print("\nTesting write-behind backpressure\n");
+        final FakeStore store = new FakeStore();
+        store.gate = new CountDownLatch(1);
+        final WriteBehindCache<String,Integer> cache = new WriteBehindCache<String, Integer>(100,
+                new LRUEviction<String>(100), store, 5, 10, TimeUnit.SECONDS, 5);
+        // First batch is taken and blocked in store, second one fills the queue
+        for (int i = 0; i < 5; i++) {
+            cache.put("key" + i, i);
+        }
+        while (cache.getPendingChanges() > 0) {
+            Thread.sleep(10);
+        }
+        for (int i = 5; i < 10; i++) {
+            cache.put("key" + i, i);
+        }
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.put("last", 0);
+            }
+        });
+        writer.start();
+        writer.join(200);
+        assertTrue(writer.isAlive());
+        assertFalse(cache.contains("last"));
+        store.gate.countDown();
+        writer.join(1000);
+        assertFalse(writer.isAlive());
+        cache.close();
+        assertEquals(11, store.data.size());
+    }
+}